@@ -0,0 +1,139 @@
+package com.seudev.util.el;
+
+import static com.seudev.util.el.ExpressionDefinitions.ofDollarCurlyBracket;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the scan of hostile templates of growing lengths. The scan is linear when the time of each benchmark grows in the same proportion as the length.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdversarialScanBenchmark {
+
+    private static final ScanLimits LIMITS = new ScanLimits(4096, 64, 10_000, 4096);
+
+    @Param({"DEEP_QUOTES", "UNCLOSED_QUOTE", "ESCAPE_RUN", "DEEP_EXPRESSIONS", "UNCLOSED_STARTS"})
+    private Shape shape;
+
+    @Param({"1000", "10000", "100000"})
+    private int length;
+
+    private ExpressionDefinition definition;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        definition = ofDollarCurlyBracket();
+        text = shape.create(length);
+    }
+
+    @Benchmark
+    public Object scan() {
+        try {
+            return definition.scan((CharSequence) text);
+        } catch (ExpressionException ex) {
+            return ex;
+        }
+    }
+
+    @Benchmark
+    public Object scanWithLimits() {
+        try {
+            return definition.scan(text, LIMITS);
+        } catch (ExpressionException ex) {
+            return ex;
+        }
+    }
+
+    @Benchmark
+    public TemplateDiagnostics validateWithLimits() {
+        return definition.validate(text, Integer.MAX_VALUE, LIMITS);
+    }
+
+    public enum Shape {
+
+        /** An expression with quote literals nested in alternating quotes, as deep as the template is long. */
+        DEEP_QUOTES {
+            @Override
+            String create(int length) {
+                int depth = ((length - 4) / 2);
+                StringBuilder builder = new StringBuilder(length).append("${");
+                for (int i = 0; i < depth; i++) {
+                    builder.append(((i % 2) == 0) ? '\'' : '"');
+                }
+                for (int i = (depth - 1); i >= 0; i--) {
+                    builder.append(((i % 2) == 0) ? '\'' : '"');
+                }
+                return builder.append('}').toString();
+            }
+        },
+
+        /** A quote literal that is never closed. */
+        UNCLOSED_QUOTE {
+            @Override
+            String create(int length) {
+                return fill(new StringBuilder(length).append("${a} '"), 'x', length).toString();
+            }
+        },
+
+        /** A long run of escape chars before an expression. */
+        ESCAPE_RUN {
+            @Override
+            String create(int length) {
+                return fill(new StringBuilder(length), '\\', (length - 4)).append("${a}").toString();
+            }
+        },
+
+        /** Expressions nested in expressions, as deep as the template is long. */
+        DEEP_EXPRESSIONS {
+            @Override
+            String create(int length) {
+                StringBuilder builder = new StringBuilder(length);
+                for (int i = 0; i < (length / 3); i++) {
+                    builder.append("${");
+                }
+                return fill(builder, '}', length).toString();
+            }
+        },
+
+        /** Only STARTs that are never closed, so a lenient scan could read the rest of the template from each one. */
+        UNCLOSED_STARTS {
+            @Override
+            String create(int length) {
+                StringBuilder builder = new StringBuilder(length);
+                while (builder.length() < length) {
+                    builder.append("${");
+                }
+                return builder.toString();
+            }
+        };
+
+        abstract String create(int length);
+
+        private static StringBuilder fill(StringBuilder builder, char c, int length) {
+            while (builder.length() < length) {
+                builder.append(c);
+            }
+            return builder;
+        }
+
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.seudev.util.el;
+
+import com.seudev.util.io.Resources;
+
+/**
+ * The templates scanned by the benchmarks.
+ */
+public enum BenchmarkTemplates {
+
+    /** A short sentence with two expressions. */
+    SMALL {
+        @Override
+        String create() {
+            return "Hello ${user.name}, you have ${messages.size()} new messages.";
+        }
+    },
+
+    /** The HTML template of the interpolation tests. */
+    HTML {
+        @Override
+        String create() {
+            return Resources.readLines("interpolation/message-template.html");
+        }
+    },
+
+    /** Some paragraphs of plain text with an expression in each line. */
+    MEDIUM {
+        @Override
+        String create() {
+            return repeat("Lorem ipsum dolor sit amet, ${consectetur} adipiscing elit, sed do eiusmod tempor ${incididunt + 1} ut labore.\n", 64);
+        }
+    },
+
+    /** About 4 MB of text with an expression in each line. */
+    LARGE {
+        @Override
+        String create() {
+            return repeat("Lorem ipsum dolor sit amet, ${consectetur} adipiscing elit, sed do eiusmod tempor ${incididunt + 1} ut labore.\n", 40_000);
+        }
+    },
+
+    /** A template where most of the STARTs are escaped. */
+    ESCAPES {
+        @Override
+        String create() {
+            return repeat("\\${escaped} \\\\ \\${a} \\} ${value} \\${b}\n", 2_048);
+        }
+    },
+
+    /** A template where most of the STARTs are inside of ignored quote literals. */
+    QUOTES {
+        @Override
+        String create() {
+            return repeat("'${quoted}' \"${double} 'nested ${x}'\" ${value + 'a \\' ${b}'}\n", 2_048);
+        }
+    };
+
+    abstract String create();
+
+    private static String repeat(String text, int count) {
+        StringBuilder builder = new StringBuilder(text.length() * count);
+        for (int i = 0; i < count; i++) {
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+
+}
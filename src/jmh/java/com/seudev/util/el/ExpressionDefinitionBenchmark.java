@@ -0,0 +1,76 @@
+package com.seudev.util.el;
+
+import static com.seudev.util.el.ExpressionDefinitions.ofDollarCurlyBracket;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the scan and the interpolation of the {@link BenchmarkTemplates} by the {@link ExpressionDefinitions#ofDollarCurlyBracket()} singleton.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionDefinitionBenchmark {
+
+    @Param({"SMALL", "HTML", "MEDIUM", "LARGE", "ESCAPES", "QUOTES"})
+    private BenchmarkTemplates template;
+
+    private ExpressionDefinition definition;
+    private String text;
+    private CompiledTemplate compiledTemplate;
+    private Function<Expression, ?> formatter;
+
+    @Setup
+    public void setUp() {
+        definition = ofDollarCurlyBracket();
+        text = template.create();
+        compiledTemplate = definition.compile(text);
+
+        Map<String, String> values = new HashMap<>();
+        for (Expression expression : compiledTemplate.getExpressions()) {
+            values.put(expression.getSubExpression(), "value of " + expression.getSubExpression());
+        }
+        formatter = expression -> values.get(expression.getSubExpression());
+    }
+
+    @Benchmark
+    public SortedMap<Expression, SortedSet<Integer>> findAll() {
+        return definition.findAll(text);
+    }
+
+    @Benchmark
+    public ExpressionScan scan() {
+        return definition.scan(text);
+    }
+
+    @Benchmark
+    public String interpolate() {
+        return definition.interpolate(text, formatter);
+    }
+
+    @Benchmark
+    public String renderCompiled() {
+        return compiledTemplate.render(formatter);
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.seudev.util.el;
+
+import static java.util.Collections.singletonMap;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.el.ELProcessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the {@link ExpressionEvaluator} evaluating the same expression repeatedly, and evaluating more distinct expressions than its cache holds,
+ * and evaluating the same expression with per-call variables, with and without the direct compilation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionEvaluatorBenchmark {
+
+    private static final int DISTINCT_EXPRESSIONS = 4 * ExpressionEvaluator.DEFAULT_CACHE_SIZE;
+
+    @Param({"1024", "0"})
+    private int cacheSize;
+
+    @Param({"false", "true"})
+    private boolean directCompilation;
+
+    private ExpressionEvaluator evaluator;
+    private String[] distinctExpressions;
+    private Map<String, Object> variables;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        ELProcessor elProcessor = new ELProcessor();
+        elProcessor.defineBean("order", new Order());
+        evaluator = new ExpressionEvaluator(elProcessor, cacheSize);
+        evaluator.setDirectCompilation(directCompilation);
+
+        variables = singletonMap("request", new Order());
+
+        distinctExpressions = new String[DISTINCT_EXPRESSIONS];
+        for (int i = 0; i < DISTINCT_EXPRESSIONS; i++) {
+            distinctExpressions[i] = "order.quantity * " + i + " + 1";
+        }
+    }
+
+    @Benchmark
+    public int repeatedExpression() {
+        return evaluator.evalAsInt("order.quantity * order.price + 1");
+    }
+
+    @Benchmark
+    public int scopedExpression() {
+        return evaluator.evalAs("request.quantity * request.price + 1", variables, Long.class).intValue();
+    }
+
+    @Benchmark
+    public int distinctExpressions() {
+        String expression = distinctExpressions[next];
+        next = ((next + 1) % DISTINCT_EXPRESSIONS);
+        return evaluator.evalAsInt(expression);
+    }
+
+    public static class Order {
+
+        public int getPrice() {
+            return 7;
+        }
+
+        public int getQuantity() {
+            return 3;
+        }
+
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.seudev.util.el;
+
+import static com.seudev.util.el.ExpressionDefinitions.ofDollarCurlyBracket;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the interpolation of a configuration whose values are layered as deep as the given depth,
+ * by the {@link RecursiveInterpolator} and by interpolating the whole document repeatedly until it stops changing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecursiveInterpolationBenchmark {
+
+    @Param({"4", "16", "64"})
+    private int depth;
+
+    private ExpressionDefinition definition;
+    private Map<String, String> values;
+    private String document;
+
+    @Setup
+    public void setUp() {
+        definition = ofDollarCurlyBracket();
+        values = new HashMap<>();
+        values.put("layer0", "value");
+        for (int i = 1; i < depth; i++) {
+            values.put("layer" + i, "${layer" + (i - 1) + "}/" + i);
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            builder.append("key").append(i).append(" = ${layer").append(i).append("}\n");
+        }
+        document = builder.toString();
+    }
+
+    @Benchmark
+    public String recursive() {
+        return definition.interpolateRecursively(document, values::get);
+    }
+
+    @Benchmark
+    public String repeated() {
+        String text = document;
+        while (true) {
+            String interpolated = definition.interpolate(text, e -> values.get(e.getSubExpression()));
+            if (interpolated.equals(text)) {
+                return text;
+            }
+            text = interpolated;
+        }
+    }
+
+}
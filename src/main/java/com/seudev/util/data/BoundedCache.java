@@ -0,0 +1,252 @@
+package com.seudev.util.data;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * A concurrent in-process cache bounded by the number of entries and, optionally, by the total weight of the entries.
+ * <p>
+ * The entries are spread among segments, each one evicting its entries when it exceeds its share of the bounds.
+ * The reads take no lock: each read only marks its entry as referenced, and only if it is not marked yet, so the hot entries are read without any write.
+ * The writes lock their segment, and evict with the second chance policy, an approximation of the least recently used policy:
+ * the eldest entries that were referenced since they were last checked are unmarked and kept, and the eldest entry that was not is evicted.
+ * The hits, misses and evictions are counted, so the effectiveness of the cache can be monitored.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class BoundedCache<K, V> {
+
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private final Segment<K, V>[] SEGMENTS;
+    private final ToLongBiFunction<? super K, ? super V> WEIGHER;
+    private final LongAdder HITS = new LongAdder();
+    private final LongAdder MISSES = new LongAdder();
+    private final LongAdder EVICTIONS = new LongAdder();
+
+    /**
+     * Constructs a cache bounded only by the number of entries.
+     *
+     * @param maximumSize the maximum number of entries
+     */
+    public BoundedCache(int maximumSize) {
+        this(maximumSize, Long.MAX_VALUE, (key, value) -> 0, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Constructs a cache bounded by the number of entries and by the total weight of the entries.
+     *
+     * @param maximumSize the maximum number of entries
+     * @param maximumWeight the maximum sum of the weights of the entries
+     * @param weigher the function that returns the weight of an entry
+     * @param concurrencyLevel the number of segments, rounded up to a power of two, but never greater than the maximum size
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BoundedCache(int maximumSize, long maximumWeight, ToLongBiFunction<? super K, ? super V> weigher, int concurrencyLevel) {
+        if ((maximumSize <= 0) || (maximumWeight <= 0) || (concurrencyLevel <= 0)) {
+            throw new IllegalArgumentException("The maximumSize, maximumWeight and concurrencyLevel must be greater than zero.");
+        }
+        WEIGHER = requireNonNull(weigher, "weigher");
+
+        int segments = 1;
+        while ((segments < concurrencyLevel) && ((segments << 1) <= maximumSize)) {
+            segments <<= 1;
+        }
+        // The shares of the segments sum exactly to the bounds, the first segments taking the remainders.
+        SEGMENTS = new Segment[segments];
+        for (int i = 0; i < segments; i++) {
+            SEGMENTS[i] = new Segment<>(share(maximumSize, segments, i), share(maximumWeight, segments, i));
+        }
+    }
+
+    private static int share(int total, int parts, int part) {
+        return (int) share((long) total, parts, part);
+    }
+
+    private static long share(long total, int parts, int part) {
+        return ((total / parts) + ((part < (total % parts)) ? 1 : 0));
+    }
+
+    public void clear() {
+        for (Segment<K, V> segment : SEGMENTS) {
+            synchronized (segment) {
+                segment.ENTRIES.clear();
+                segment.ORDER.clear();
+                segment.weight = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the value associated to the given key, computing and caching it if it is absent.
+     * The value is computed outside of the segment lock, so concurrent misses of the same key may compute the value more than once.
+     *
+     * @param key the key
+     * @param mappingFunction the function that computes the value
+     * @return the cached or computed value
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        V value = get(key);
+        if (value == null) {
+            value = mappingFunction.apply(key);
+            if (value != null) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value associated to the given key, without taking any lock.
+     *
+     * @param key the key
+     * @return the value, or null if the key is not cached
+     */
+    public V get(K key) {
+        Entry<V> entry = getSegment(key).ENTRIES.get(key);
+        if (entry == null) {
+            MISSES.increment();
+            return null;
+        }
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        HITS.increment();
+        return entry.VALUE;
+    }
+
+    public long getEvictionCount() {
+        return EVICTIONS.sum();
+    }
+
+    public long getHitCount() {
+        return HITS.sum();
+    }
+
+    public long getMissCount() {
+        return MISSES.sum();
+    }
+
+    public void invalidate(K key) {
+        Segment<K, V> segment = getSegment(key);
+        synchronized (segment) {
+            Entry<V> entry = segment.ENTRIES.remove(key);
+            if (entry != null) {
+                segment.ORDER.remove(key);
+                segment.weight -= entry.WEIGHT;
+            }
+        }
+    }
+
+    /**
+     * Caches the given value, evicting entries if necessary, but never the given one.
+     * A value heavier than the maximum weight of its segment is not cached.
+     *
+     * @param key the key
+     * @param value the value
+     */
+    public void put(K key, V value) {
+        requireNonNull(value, "value");
+        Entry<V> entry = new Entry<>(value, WEIGHER.applyAsLong(key, value));
+        Segment<K, V> segment = getSegment(key);
+        if (entry.WEIGHT > segment.MAXIMUM_WEIGHT) {
+            invalidate(key);
+            return;
+        }
+        int evictions = 0;
+        synchronized (segment) {
+            Entry<V> previous = segment.ENTRIES.put(key, entry);
+            if (previous != null) {
+                segment.ORDER.remove(key);
+                segment.weight -= previous.WEIGHT;
+            }
+            segment.ORDER.put(key, entry);
+            segment.weight += entry.WEIGHT;
+
+            // The concurrent reads may mark the entries again, so the second chances are limited to one pass over the segment.
+            int secondChances = segment.ORDER.size();
+            while ((segment.ENTRIES.size() > segment.MAXIMUM_SIZE) || (segment.weight > segment.MAXIMUM_WEIGHT)) {
+                Iterator<Map.Entry<K, Entry<V>>> iterator = segment.ORDER.entrySet().iterator();
+                Map.Entry<K, Entry<V>> eldest = iterator.next();
+                iterator.remove();
+                if ((eldest.getValue() == entry) || (eldest.getValue().referenced && (secondChances-- > 0))) {
+                    // A second chance: the entry becomes the youngest one.
+                    eldest.getValue().referenced = false;
+                    segment.ORDER.put(eldest.getKey(), eldest.getValue());
+                } else {
+                    segment.ENTRIES.remove(eldest.getKey());
+                    segment.weight -= eldest.getValue().WEIGHT;
+                    evictions++;
+                }
+            }
+        }
+        if (evictions > 0) {
+            EVICTIONS.add(evictions);
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment<K, V> segment : SEGMENTS) {
+            size += segment.ENTRIES.size();
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+                .append("BoundedCache [SIZE=").append(size())
+                .append(", HITS=").append(getHitCount())
+                .append(", MISSES=").append(getMissCount())
+                .append(", EVICTIONS=").append(getEvictionCount())
+                .append("]").toString();
+    }
+
+    private Segment<K, V> getSegment(K key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return SEGMENTS[hash & (SEGMENTS.length - 1)];
+    }
+
+    private static final class Entry<V> {
+
+        private final V VALUE;
+        private final long WEIGHT;
+        private volatile boolean referenced;
+
+        private Entry(V value, long weight) {
+            VALUE = value;
+            WEIGHT = weight;
+        }
+
+    }
+
+    /**
+     * A segment of the cache. The entries are read from a concurrent map without locking, and are written, in both maps, while holding the segment lock.
+     * The order map keeps the entries from the eldest to the youngest one, for the eviction.
+     */
+    private static final class Segment<K, V> {
+
+        private final int MAXIMUM_SIZE;
+        private final long MAXIMUM_WEIGHT;
+        private final Map<K, Entry<V>> ENTRIES = new ConcurrentHashMap<>();
+        private final Map<K, Entry<V>> ORDER = new LinkedHashMap<>();
+        private long weight;
+
+        private Segment(int maximumSize, long maximumWeight) {
+            MAXIMUM_SIZE = maximumSize;
+            MAXIMUM_WEIGHT = maximumWeight;
+        }
+
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.seudev.util.el;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Collections.emptyMap;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import javax.el.ELClass;
+import javax.el.ELContext;
+import javax.el.ELException;
+import javax.el.ELResolver;
+
+/**
+ * Reads the bean properties through the {@link MethodHandle}s of their public getters, introspected once per class.
+ * <p>
+ * The classes that the standard {@link ELResolver}s handle specially (the maps, the lists, the arrays, the resource bundles and the {@link ELClass})
+ * have no getters here, as the properties without a public getter, so they are left to the {@link ELResolver}s.
+ */
+final class BeanAccessors {
+
+    private static final ClassValue<Map<String, MethodHandle>> GETTERS = new ClassValue<Map<String, MethodHandle>>() {
+
+        @Override
+        protected Map<String, MethodHandle> computeValue(Class<?> type) {
+            return findGetters(type);
+        }
+
+    };
+
+    private BeanAccessors() {
+    }
+
+    /**
+     * Returns the getter of the given property.
+     *
+     * @param type the bean class
+     * @param property the property name
+     * @return the getter, or null if the property must be resolved by the {@link ELResolver}s
+     */
+    static MethodHandle getGetter(Class<?> type, String property) {
+        return GETTERS.get(type).get(property);
+    }
+
+    /**
+     * Reads the property of the given bean, as the {@link javax.el.BeanELResolver} does.
+     *
+     * @param context the context, in which the property is marked as resolved
+     * @param getter the getter of the property
+     * @param base the bean
+     * @param property the property name
+     * @return the property value
+     */
+    static Object getValue(ELContext context, MethodHandle getter, Object base, String property) {
+        Object value;
+        try {
+            value = (Object) getter.invokeExact(base);
+        } catch (ELException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new ELException(ex);
+        }
+        context.setPropertyResolved(base, property);
+        return value;
+    }
+
+    private static Map<String, MethodHandle> findGetters(Class<?> type) {
+        if (Map.class.isAssignableFrom(type) || List.class.isAssignableFrom(type) || ResourceBundle.class.isAssignableFrom(type) || type.isArray()
+                || (type == ELClass.class)) {
+            return emptyMap();
+        }
+        Map<String, MethodHandle> getters = new HashMap<>();
+        try {
+            for (PropertyDescriptor descriptor : Introspector.getBeanInfo(type).getPropertyDescriptors()) {
+                Method method = descriptor.getReadMethod();
+                if ((method != null) && Modifier.isPublic(method.getModifiers()) && Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                    getters.put(descriptor.getName(), MethodHandles.publicLookup().unreflect(method).asType(methodType(Object.class, Object.class)));
+                }
+            }
+        } catch (IntrospectionException | IllegalAccessException ex) {
+            // The properties are resolved by the ELResolvers, that report the error.
+            return emptyMap();
+        }
+        return getters;
+    }
+
+}
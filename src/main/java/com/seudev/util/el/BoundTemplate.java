@@ -0,0 +1,133 @@
+package com.seudev.util.el;
+
+import static java.util.Collections.unmodifiableList;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * A {@link CompiledTemplate} whose expressions were resolved once to the slots of a list of variable names.
+ * The sub-expression of each expression must be one of the variable names, and its value is read from the slot of that name when the template is rendered,
+ * so no expression is hashed or formatted by a function while rendering.
+ * Instances are immutable, so the same bound template can be rendered concurrently by many threads.
+ *
+ * @see CompiledTemplate#bind(List)
+ */
+public final class BoundTemplate implements Serializable {
+
+    private static final long serialVersionUID = 5561208394862231127L;
+
+    private final String[] SEGMENTS;
+    private final Expression[] EXPRESSIONS;
+    private final int[] SLOTS;
+    private final List<String> NAMES;
+    private final int CAPACITY;
+
+    BoundTemplate(String[] segments, Expression[] expressions, List<String> names) {
+        Map<String, Integer> slots = new HashMap<>();
+        for (String name : names) {
+            if (slots.putIfAbsent(name, slots.size()) != null) {
+                throw new IllegalArgumentException("The variable names must be distinct: " + name);
+            }
+        }
+        SEGMENTS = segments;
+        EXPRESSIONS = expressions;
+        SLOTS = new int[expressions.length];
+        for (int i = 0; i < expressions.length; i++) {
+            Integer slot = slots.get(expressions[i].getSubExpression());
+            if (slot == null) {
+                throw new ExpressionException("The expression is not bound to a variable: " + expressions[i].getExpression());
+            }
+            SLOTS[i] = slot;
+        }
+        NAMES = unmodifiableList(new ArrayList<>(names));
+
+        int capacity = 0;
+        for (String segment : segments) {
+            capacity += segment.length();
+        }
+        CAPACITY = capacity + (16 * expressions.length);
+    }
+
+    /**
+     * Returns the variable names, in the order of their slots.
+     *
+     * @return an unmodifiable list of variable names
+     */
+    public List<String> getNames() {
+        return NAMES;
+    }
+
+    /**
+     * Returns the slot of the variable of each expression, in the order in which the expressions appear.
+     *
+     * @return the slots
+     */
+    public int[] getSlots() {
+        return SLOTS.clone();
+    }
+
+    /**
+     * Renders this template reading the value of each expression from the slot of its variable.
+     *
+     * @param values the values of the variables, in the order of the names
+     * @return the rendered text
+     */
+    public String render(Object... values) {
+        if (values.length < NAMES.size()) {
+            throw new IllegalArgumentException("Expected " + NAMES.size() + " values, but " + values.length + " were given.");
+        }
+        if (EXPRESSIONS.length == 0) {
+            return SEGMENTS[0];
+        }
+        StringBuilder builder = new StringBuilder(CAPACITY);
+        for (int i = 0; i < EXPRESSIONS.length; i++) {
+            builder.append(SEGMENTS[i]).append(toString(i, values[SLOTS[i]]));
+        }
+        return builder.append(SEGMENTS[EXPRESSIONS.length]).toString();
+    }
+
+    /**
+     * Renders this template reading the value of each expression from the given accessor, called with the slot of the variable.
+     *
+     * @param accessor the function that returns the value of a slot
+     * @return the rendered text
+     */
+    public String render(IntFunction<?> accessor) {
+        if (EXPRESSIONS.length == 0) {
+            return SEGMENTS[0];
+        }
+        StringBuilder builder = new StringBuilder(CAPACITY);
+        for (int i = 0; i < EXPRESSIONS.length; i++) {
+            Object value;
+            try {
+                value = accessor.apply(SLOTS[i]);
+            } catch (RuntimeException ex) {
+                throw new ExpressionException("The expression cannot be interpolate: " + EXPRESSIONS[i].getExpression(), ex);
+            }
+            builder.append(SEGMENTS[i]).append(toString(i, value));
+        }
+        return builder.append(SEGMENTS[EXPRESSIONS.length]).toString();
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+                .append("BoundTemplate [NAMES=").append(NAMES)
+                .append(", EXPRESSIONS=").append(EXPRESSIONS.length)
+                .append("]").toString();
+    }
+
+    private String toString(int expressionIndex, Object value) {
+        if (value == null) {
+            throw new ExpressionException("The expression cannot be interpolate: " + EXPRESSIONS[expressionIndex].getExpression(),
+                    new ExpressionException("The expression value must be not null."));
+        }
+        return value.toString();
+    }
+
+}
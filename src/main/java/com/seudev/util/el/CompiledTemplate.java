@@ -0,0 +1,389 @@
+package com.seudev.util.el;
+
+import static com.seudev.util.el.ExpressionDefinition.formatExpression;
+import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableList;
+
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * A template that was scanned once by an {@link ExpressionDefinition}.
+ * It is composed by literal segments, with the escape chars already removed, and by the expressions between them.
+ * Instances are immutable, so the same compiled template can be rendered concurrently by many threads.
+ *
+ * @see ExpressionDefinition#compile(String)
+ */
+public final class CompiledTemplate implements Serializable {
+
+    private static final long serialVersionUID = -2319558260612044165L;
+
+    private final String[] SEGMENTS;
+    private final Expression[] EXPRESSIONS;
+    private final int CAPACITY;
+
+    CompiledTemplate(String template, ExpressionScan scan) {
+        this(toSegments(template, scan), detach(scan.EXPRESSIONS));
+    }
+
+    /**
+     * @param segments the literal segments, one more than the expressions
+     * @param expressions the expressions, sorted by the start index
+     */
+    CompiledTemplate(String[] segments, Expression[] expressions) {
+        SEGMENTS = segments;
+        EXPRESSIONS = expressions;
+
+        int capacity = 0;
+        for (String segment : SEGMENTS) {
+            capacity += segment.length();
+        }
+        for (Expression expression : EXPRESSIONS) {
+            capacity += expression.getExpression().length();
+        }
+        CAPACITY = capacity;
+    }
+
+    /**
+     * The expressions are rendered many times, so they hold their own strings instead of the template.
+     */
+    private static Expression[] detach(Expression[] expressions) {
+        Expression[] detached = new Expression[expressions.length];
+        for (int i = 0; i < expressions.length; i++) {
+            detached[i] = expressions[i].detach();
+        }
+        return detached;
+    }
+
+    private static String[] toSegments(String template, ExpressionScan scan) {
+        String[] segments = new String[scan.EXPRESSIONS.length + 1];
+        if (scan.isEmpty()) {
+            segments[0] = template;
+            return segments;
+        }
+        StringBuilder segment = new StringBuilder();
+        int[] escapes = scan.ESCAPES;
+        int index = 0, e = 0, i = 0;
+        for (Expression expression : scan.EXPRESSIONS) {
+            for (; (e < escapes.length) && (escapes[e] < expression.getStart()); e++) {
+                segment.append(template, index, escapes[e]);
+                index = (escapes[e] + 1);
+            }
+            segments[i++] = segment.append(template, index, expression.getStart()).toString();
+            segment.setLength(0);
+            index = expression.getEnd();
+        }
+        for (; e < escapes.length; e++) {
+            segment.append(template, index, escapes[e]);
+            index = (escapes[e] + 1);
+        }
+        segments[i] = segment.append(template, index, template.length()).toString();
+        return segments;
+    }
+
+    /**
+     * Binds this template to the given variable names, resolving the sub-expression of each expression to the slot of its name once.
+     *
+     * @param names the distinct variable names, in the order of their slots
+     * @return the bound template
+     * @throws ExpressionException if the sub-expression of an expression is not one of the names
+     */
+    public BoundTemplate bind(List<String> names) {
+        return new BoundTemplate(SEGMENTS, EXPRESSIONS, names);
+    }
+
+    public BoundTemplate bind(String... names) {
+        return bind(asList(names));
+    }
+
+    /**
+     * Encodes the literal segments of this template with the given charset, so the template can be rendered directly to bytes.
+     *
+     * @param charset the charset of the output
+     * @return the encoded template
+     * @throws IllegalArgumentException if the charset does not support encoding, writes a byte order mark or keeps a state between the encoded texts
+     */
+    public EncodedTemplate encode(Charset charset) {
+        return new EncodedTemplate(SEGMENTS, EXPRESSIONS, charset);
+    }
+
+    /**
+     * Returns the expressions of this template, in the order in which they appear.
+     *
+     * @return an unmodifiable list of expressions
+     */
+    public List<Expression> getExpressions() {
+        return unmodifiableList(asList(EXPRESSIONS));
+    }
+
+    /**
+     * Returns the literal segments of this template. There is always one segment more than expressions:
+     * the segment {@code i} precedes the expression {@code i} and the last segment follows the last expression.
+     *
+     * @return an unmodifiable list of literal segments
+     */
+    public List<String> getSegments() {
+        return unmodifiableList(asList(SEGMENTS));
+    }
+
+    public String render(Function<Expression, ?> formatter) {
+        if (EXPRESSIONS.length == 0) {
+            return SEGMENTS[0];
+        }
+        StringBuilder builder = new StringBuilder(CAPACITY);
+        for (int i = 0; i < EXPRESSIONS.length; i++) {
+            builder.append(SEGMENTS[i]).append(formatExpression(EXPRESSIONS[i], formatter));
+        }
+        return builder.append(SEGMENTS[EXPRESSIONS.length]).toString();
+    }
+
+    /**
+     * Renders this template once for each record of the given stream.
+     * The stream is lazy and keeps the characteristics of the given stream, so a parallel ordered stream renders in parallel and keeps the order of the records.
+     *
+     * @param <R> the type of the records
+     * @param records the records
+     * @param formatter the function that returns the value of an expression for a record
+     * @return the stream of the rendered texts
+     */
+    public <R> Stream<String> renderAll(Stream<R> records, BiFunction<Expression, ? super R, ?> formatter) {
+        return records.map(record -> render(expression -> formatter.apply(expression, record)));
+    }
+
+    /**
+     * Renders this template once for each of the given records, running the renders in the given executor.
+     * At most {@code maximumInFlight} renders are pending at a time, so the records are consumed lazily and the memory used is bounded.
+     * <p>
+     * If {@code ordered} is true, the consumer is called by the calling thread in the order of the records.
+     * Otherwise, the consumer is called by the executor threads as soon as each render completes, so it must be thread-safe.
+     * This method returns when all records were consumed, or throws the first failure of a render or of the consumer, including an {@link Error}.
+     *
+     * @param <R> the type of the records
+     * @param records the records
+     * @param formatter the function that returns the value of an expression for a record
+     * @param consumer the consumer of each record and its rendered text
+     * @param executor the executor of the renders, or null to use the {@link ForkJoinPool#commonPool() common pool}
+     * @param maximumInFlight the maximum number of pending renders
+     * @param ordered whether the rendered texts must be consumed in the order of the records
+     */
+    public <R> void renderAll(Iterable<R> records, BiFunction<Expression, ? super R, ?> formatter, BiConsumer<? super R, ? super String> consumer, Executor executor, int maximumInFlight, boolean ordered) {
+        if (maximumInFlight <= 0) {
+            throw new IllegalArgumentException("The maximumInFlight must be greater than zero.");
+        }
+        Executor renderExecutor = (executor == null) ? ForkJoinPool.commonPool() : executor;
+        if (ordered) {
+            renderAllOrdered(records, formatter, consumer, renderExecutor, maximumInFlight);
+        } else {
+            renderAllUnordered(records, formatter, consumer, renderExecutor, maximumInFlight);
+        }
+    }
+
+    /**
+     * Renders this template resolving the expressions asynchronously.
+     *
+     * @param formatter the function that starts the resolution of the value of an expression
+     * @return the future of the rendered text
+     * @see #renderAsync(Function, long, TimeUnit, Function)
+     */
+    public CompletableFuture<String> renderAsync(Function<Expression, ? extends CompletionStage<?>> formatter) {
+        return renderAsync(formatter, 0, TimeUnit.MILLISECONDS, null);
+    }
+
+    /**
+     * Renders this template resolving the expressions asynchronously.
+     * The resolution of all distinct expressions is started at once, and the text is rendered when all of them complete.
+     * The expressions with the same text are resolved only once, by the formatter called with the first of them.
+     * <p>
+     * If the resolution of an expression fails, returns null or does not complete within the timeout, the value returned by the fallback function is used.
+     * The fallback function is called at most once for each expression, even if its resolution fails when its timeout expires.
+     * If there is no fallback, the returned future completes exceptionally with an {@link ExpressionException}.
+     *
+     * @param formatter the function that starts the resolution of the value of an expression
+     * @param timeout the maximum time to wait for each expression, or zero to wait indefinitely
+     * @param unit the unit of the timeout
+     * @param fallback the function that returns the value of an expression whose resolution failed, or null
+     * @return the future of the rendered text
+     */
+    public CompletableFuture<String> renderAsync(Function<Expression, ? extends CompletionStage<?>> formatter, long timeout, TimeUnit unit, Function<Expression, ?> fallback) {
+        if (EXPRESSIONS.length == 0) {
+            return CompletableFuture.completedFuture(SEGMENTS[0]);
+        }
+        Map<String, CompletableFuture<Object>> values = new HashMap<>();
+        for (Expression expression : EXPRESSIONS) {
+            values.computeIfAbsent(expression.getExpression(), key -> resolveAsync(expression, formatter, timeout, unit, fallback));
+        }
+        return CompletableFuture.allOf(values.values().toArray(new CompletableFuture<?>[values.size()]))
+                .thenApply(v -> render(expression -> values.get(expression.getExpression()).join()));
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+                .append("CompiledTemplate [SEGMENTS=").append(SEGMENTS.length)
+                .append(", EXPRESSIONS=").append(EXPRESSIONS.length)
+                .append("]").toString();
+    }
+
+    /**
+     * Completes the given value with the fallback value, unless the value was already claimed by its resolution, by the timeout or by a previous failure,
+     * so the fallback function is called at most once for each expression.
+     */
+    private void fallback(CompletableFuture<Object> value, AtomicBoolean claim, Expression expression, Function<Expression, ?> fallback, Throwable cause) {
+        if (!claim.compareAndSet(false, true)) {
+            return;
+        }
+        if (fallback == null) {
+            value.completeExceptionally(new ExpressionException("The expression cannot be interpolate: " + expression.getExpression(), cause));
+            return;
+        }
+        try {
+            Object fallbackValue = fallback.apply(expression);
+            if (fallbackValue == null) {
+                throw new ExpressionException("The expression value must be not null.");
+            }
+            value.complete(fallbackValue);
+        } catch (RuntimeException ex) {
+            value.completeExceptionally(new ExpressionException("The expression cannot be interpolate: " + expression.getExpression(), ex));
+        }
+    }
+
+    private <R> void renderAllOrdered(Iterable<R> records, BiFunction<Expression, ? super R, ?> formatter, BiConsumer<? super R, ? super String> consumer, Executor executor, int maximumInFlight) {
+        Deque<R> pendingRecords = new ArrayDeque<>(maximumInFlight);
+        Deque<CompletableFuture<String>> pendingRenders = new ArrayDeque<>(maximumInFlight);
+        try {
+            for (R record : records) {
+                if (pendingRenders.size() >= maximumInFlight) {
+                    consumer.accept(pendingRecords.poll(), pendingRenders.poll().join());
+                }
+                pendingRecords.add(record);
+                pendingRenders.add(CompletableFuture.supplyAsync(() -> render(expression -> formatter.apply(expression, record)), executor));
+            }
+            while (!pendingRenders.isEmpty()) {
+                consumer.accept(pendingRecords.poll(), pendingRenders.poll().join());
+            }
+        } catch (CompletionException ex) {
+            pendingRenders.forEach(render -> render.cancel(false));
+            throw unwrap(ex);
+        } catch (RuntimeException ex) {
+            pendingRenders.forEach(render -> render.cancel(false));
+            throw ex;
+        }
+    }
+
+    private <R> void renderAllUnordered(Iterable<R> records, BiFunction<Expression, ? super R, ?> formatter, BiConsumer<? super R, ? super String> consumer, Executor executor, int maximumInFlight) {
+        Semaphore permits = new Semaphore(maximumInFlight);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try {
+            for (R record : records) {
+                permits.acquire();
+                if (failure.get() != null) {
+                    permits.release();
+                    break;
+                }
+                try {
+                    executor.execute(() -> {
+                        try {
+                            consumer.accept(record, render(expression -> formatter.apply(expression, record)));
+                        } catch (Throwable ex) {
+                            failure.compareAndSet(null, ex);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                } catch (RuntimeException ex) {
+                    permits.release();
+                    throw ex;
+                }
+            }
+            permits.acquire(maximumInFlight);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ExpressionException("The interpolation was interrupted.", ex);
+        }
+        Throwable cause = failure.get();
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        if (cause != null) {
+            throw new ExpressionException(cause);
+        }
+    }
+
+    private CompletableFuture<Object> resolveAsync(Expression expression, Function<Expression, ? extends CompletionStage<?>> formatter, long timeout, TimeUnit unit, Function<Expression, ?> fallback) {
+        CompletableFuture<Object> value = new CompletableFuture<>();
+        AtomicBoolean claim = new AtomicBoolean();
+        CompletionStage<?> stage;
+        try {
+            stage = formatter.apply(expression);
+            if (stage == null) {
+                throw new ExpressionException("The expression value must be not null.");
+            }
+        } catch (RuntimeException ex) {
+            fallback(value, claim, expression, fallback, ex);
+            return value;
+        }
+        stage.whenComplete((result, ex) -> {
+            if ((ex == null) && (result != null)) {
+                if (claim.compareAndSet(false, true)) {
+                    value.complete(result);
+                }
+            } else {
+                fallback(value, claim, expression, fallback, (ex == null) ? new ExpressionException("The expression value must be not null.") : ex);
+            }
+        });
+        if ((timeout > 0) && (!value.isDone())) {
+            ScheduledFuture<?> timeoutTask = Timeouts.SCHEDULER.schedule(() -> {
+                fallback(value, claim, expression, fallback, new TimeoutException("The expression was not resolved within " + timeout + " " + unit));
+            }, timeout, unit);
+            value.whenComplete((result, ex) -> timeoutTask.cancel(false));
+        }
+        return value;
+    }
+
+    private RuntimeException unwrap(CompletionException ex) {
+        Throwable cause = ex.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new ExpressionException(cause);
+    }
+
+    private static final class Timeouts {
+
+        private static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "compiled-template-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        static {
+            SCHEDULER.setRemoveOnCancelPolicy(true);
+        }
+
+    }
+
+}
@@ -0,0 +1,215 @@
+package com.seudev.util.el;
+
+import static com.seudev.util.el.ExpressionDefinition.interpolateExpressions;
+import static com.seudev.util.el.ExpressionDefinitions.ofDoubleQuoteLiteral;
+import static com.seudev.util.el.ExpressionDefinitions.ofSingleQuoteLiteral;
+import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Comparator.comparingInt;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.Function;
+
+/**
+ * Finds the expressions of many {@link ExpressionDefinition}s in one left-to-right pass.
+ * Each found {@link Expression} is tagged with the definition that matched it, see {@link Expression#getDefinition()}.
+ * <p>
+ * When the START of many definitions match at the same index, the longest START wins.
+ * A char is an escape char if it is the escape char of any definition, and a quote literal is ignored only if it is ignored by all definitions.
+ *
+ * @see ExpressionDefinitions#combine(ExpressionDefinition...)
+ */
+public class CompositeExpressionDefinition implements Serializable {
+
+    private static final long serialVersionUID = -3184603470945373250L;
+
+    private static final int ASCII_LENGTH = 128;
+
+    private final ExpressionDefinition[] DEFINITIONS;
+    private final char[] ESCAPES;
+    private final boolean IGNORE_SINGLE_QUOTE_LITERAL;
+    private final boolean IGNORE_DOUBLE_QUOTE_LITERAL;
+    private final char[] FIRST_CHARS;
+    private final ExpressionDefinition[][] CANDIDATES;
+    private final byte[] ASCII_CANDIDATES_INDEX;
+
+    public CompositeExpressionDefinition(ExpressionDefinition... definitions) {
+        if (definitions.length == 0) {
+            throw new ExpressionException("Syntax error: At least one expression definition must be given");
+        }
+        DEFINITIONS = definitions.clone();
+
+        StringBuilder escapes = new StringBuilder();
+        boolean ignoreSingleQuoteLiteral = true, ignoreDoubleQuoteLiteral = true;
+        Map<Character, List<ExpressionDefinition>> candidates = new LinkedHashMap<>();
+        for (ExpressionDefinition definition : DEFINITIONS) {
+            if (escapes.indexOf(String.valueOf(definition.getEscape())) < 0) {
+                escapes.append(definition.getEscape());
+            }
+            ignoreSingleQuoteLiteral &= definition.ignoreSingleQuoteLiteral('\'');
+            ignoreDoubleQuoteLiteral &= definition.ignoreDoubleQuoteLiteral('"');
+
+            List<ExpressionDefinition> list = candidates.computeIfAbsent(definition.getStart().charAt(0), c -> new ArrayList<>());
+            for (ExpressionDefinition candidate : list) {
+                if (candidate.getStart().equals(definition.getStart())) {
+                    throw new ExpressionException("Syntax error: The expression definitions must have distinct open arguments: " + definition.getStart());
+                }
+            }
+            list.add(definition);
+        }
+        ESCAPES = escapes.toString().toCharArray();
+        IGNORE_SINGLE_QUOTE_LITERAL = ignoreSingleQuoteLiteral;
+        IGNORE_DOUBLE_QUOTE_LITERAL = ignoreDoubleQuoteLiteral;
+
+        FIRST_CHARS = new char[candidates.size()];
+        CANDIDATES = new ExpressionDefinition[candidates.size()][];
+        ASCII_CANDIDATES_INDEX = new byte[ASCII_LENGTH];
+        int i = 0;
+        for (Map.Entry<Character, List<ExpressionDefinition>> entry : candidates.entrySet()) {
+            List<ExpressionDefinition> list = entry.getValue();
+            list.sort(comparingInt((ExpressionDefinition d) -> d.getStart().length()).reversed());
+            FIRST_CHARS[i] = entry.getKey();
+            CANDIDATES[i] = list.toArray(new ExpressionDefinition[list.size()]);
+            if ((FIRST_CHARS[i] < ASCII_LENGTH) && (i < Byte.MAX_VALUE)) {
+                ASCII_CANDIDATES_INDEX[FIRST_CHARS[i]] = (byte) (i + 1);
+            }
+            i++;
+        }
+    }
+
+    public CompiledTemplate compile(String template) {
+        return compile(template, 0);
+    }
+
+    public CompiledTemplate compile(String template, int offset) {
+        return new CompiledTemplate(template, ExpressionScan.of(findAll(template, offset)));
+    }
+
+    public SortedMap<Expression, SortedSet<Integer>> findAll(String template) {
+        return findAll(template, 0);
+    }
+
+    public SortedMap<Expression, SortedSet<Integer>> findAll(String template, int offset) {
+        return scan(template, offset).asSortedMap();
+    }
+
+    public ExpressionScan scan(String template) {
+        return scan(template, 0);
+    }
+
+    public ExpressionScan scan(String template, int offset) {
+        ExpressionListener listener = ExpressionListeners.getListener();
+        if (listener == ExpressionListener.NOOP) {
+            return scanExpressions(template, offset);
+        }
+        long start = System.nanoTime();
+        ExpressionScan scan;
+        try {
+            scan = scanExpressions(template, offset);
+        } catch (RuntimeException ex) {
+            listener.onScanFailure(template, ex);
+            throw ex;
+        }
+        listener.onScan(template, scan.size(), scan.getEscapeCount(), (System.nanoTime() - start));
+        return scan;
+    }
+
+    public List<ExpressionDefinition> getDefinitions() {
+        return unmodifiableList(asList(DEFINITIONS));
+    }
+
+    public String interpolate(String template, Function<Expression, ?> formatter) {
+        return interpolate(template, 0, formatter);
+    }
+
+    public String interpolate(String template, int offset, Function<Expression, ?> formatter) {
+        return interpolateExpressions(template, scan(template, offset), formatter);
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+                .append("CompositeExpressionDefinition [DEFINITIONS=").append(asList(DEFINITIONS))
+                .append("]").toString();
+    }
+
+    private ExpressionScan scanExpressions(String template, int offset) {
+        List<Expression> expressions = new ArrayList<>();
+        IntList escapesBounds = new IntList();
+        IntList escapes = new IntList();
+        int firstEscape = 0;
+        for (int i = offset; i < template.length(); i++) {
+            char c = template.charAt(i);
+
+            if (isEscapeChar(c)) {
+                escapes.add(i);
+                i++;
+                continue;
+            }
+            if (IGNORE_SINGLE_QUOTE_LITERAL && (c == '\'')) {
+                i = ofSingleQuoteLiteral().getExpressionEndIndex(template, i);
+                continue;
+            }
+            if (IGNORE_DOUBLE_QUOTE_LITERAL && (c == '"')) {
+                i = ofDoubleQuoteLiteral().getExpressionEndIndex(template, i);
+                continue;
+            }
+            ExpressionDefinition definition = getDefinitionStartingAt(template, i, c);
+            if (definition != null) {
+                Expression expression = definition.getExpression(template, i);
+                expressions.add(expression);
+                i = (expression.getEnd() - 1);
+                escapesBounds.add(firstEscape);
+                firstEscape = escapes.size();
+            }
+        }
+        if (expressions.isEmpty()) {
+            return ExpressionScan.EMPTY;
+        }
+        escapesBounds.add(escapes.size());
+        return new ExpressionScan(expressions.toArray(new Expression[expressions.size()]), escapes.toArray(), escapesBounds.toArray());
+    }
+
+    private ExpressionDefinition getDefinitionStartingAt(String template, int index, char c) {
+        int candidatesIndex = -1;
+        if (c < ASCII_LENGTH) {
+            candidatesIndex = (ASCII_CANDIDATES_INDEX[c] - 1);
+            if ((candidatesIndex < 0) && (FIRST_CHARS.length < Byte.MAX_VALUE)) {
+                return null;
+            }
+        }
+        if (candidatesIndex < 0) {
+            for (int i = 0; i < FIRST_CHARS.length; i++) {
+                if (FIRST_CHARS[i] == c) {
+                    candidatesIndex = i;
+                    break;
+                }
+            }
+            if (candidatesIndex < 0) {
+                return null;
+            }
+        }
+        for (ExpressionDefinition definition : CANDIDATES[candidatesIndex]) {
+            if (template.startsWith(definition.getStart(), index)) {
+                return definition;
+            }
+        }
+        return null;
+    }
+
+    private boolean isEscapeChar(char c) {
+        for (char escape : ESCAPES) {
+            if (c == escape) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.seudev.util.el;
+
+import static com.seudev.util.el.ExpressionDefinition.formatExpression;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * A {@link CompiledTemplate} whose literal segments were encoded once to bytes, so only the values of the expressions are encoded when it is rendered.
+ * The output is written directly to an {@link OutputStream}, a {@link WritableByteChannel} or a {@link ByteBuffer}, without creating the rendered text.
+ * <p>
+ * The segments are encoded independently, so the charset must not write a byte order mark or keep a state between segments, as UTF-8 and ISO-8859-1 do not.
+ * Such charsets, like UTF-16 and ISO-2022-JP, are rejected when the template is encoded.
+ * The malformed and unmappable chars of the values are replaced, as in {@link String#getBytes(Charset)}.
+ * Instances are immutable, so the same encoded template can be rendered concurrently by many threads.
+ *
+ * @see CompiledTemplate#encode(Charset)
+ */
+public final class EncodedTemplate {
+
+    private static final int BUFFER_SIZE = 1024;
+    private static final String[] PROBES = {"a", "\u00e9", "\u3042", "\ud83d\ude00"};
+
+    private final byte[][] SEGMENTS;
+    private final Expression[] EXPRESSIONS;
+    private final Charset CHARSET;
+
+    EncodedTemplate(String[] segments, Expression[] expressions, Charset charset) {
+        CHARSET = checkStateless(requireNonNull(charset, "charset"));
+        EXPRESSIONS = expressions;
+        SEGMENTS = new byte[segments.length][];
+        for (int i = 0; i < segments.length; i++) {
+            SEGMENTS[i] = segments[i].getBytes(charset);
+        }
+    }
+
+    public Charset getCharset() {
+        return CHARSET;
+    }
+
+    /**
+     * Renders this template to the given buffer, starting at its current position.
+     *
+     * @param formatter the function that returns the value of each expression
+     * @param buffer the buffer where the output is written
+     * @return the number of bytes written
+     * @throws BufferOverflowException if the buffer has not enough space for the output, in which case the position of the buffer is undefined
+     */
+    public int render(Function<Expression, ?> formatter, ByteBuffer buffer) {
+        int start = buffer.position();
+        CharsetEncoder encoder = newEncoder();
+        for (int i = 0; i < EXPRESSIONS.length; i++) {
+            buffer.put(SEGMENTS[i]);
+            CharBuffer value = CharBuffer.wrap(formatExpression(EXPRESSIONS[i], formatter));
+            encoder.reset();
+            if (encoder.encode(value, buffer, true).isOverflow() || encoder.flush(buffer).isOverflow()) {
+                throw new BufferOverflowException();
+            }
+        }
+        buffer.put(SEGMENTS[EXPRESSIONS.length]);
+        return (buffer.position() - start);
+    }
+
+    public void render(Function<Expression, ?> formatter, OutputStream out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        CharsetEncoder encoder = newEncoder();
+        for (int i = 0; i < EXPRESSIONS.length; i++) {
+            out.write(SEGMENTS[i]);
+            CharBuffer value = CharBuffer.wrap(formatExpression(EXPRESSIONS[i], formatter));
+            encoder.reset();
+            boolean flushing = false;
+            while (true) {
+                CoderResult result = flushing ? encoder.flush(buffer) : encoder.encode(value, buffer, true);
+                out.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+                if (result.isUnderflow()) {
+                    if (flushing) {
+                        break;
+                    }
+                    flushing = true;
+                }
+            }
+        }
+        out.write(SEGMENTS[EXPRESSIONS.length]);
+    }
+
+    public void render(Function<Expression, ?> formatter, WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        CharsetEncoder encoder = newEncoder();
+        for (int i = 0; i < EXPRESSIONS.length; i++) {
+            write(channel, ByteBuffer.wrap(SEGMENTS[i]));
+            CharBuffer value = CharBuffer.wrap(formatExpression(EXPRESSIONS[i], formatter));
+            encoder.reset();
+            boolean flushing = false;
+            while (true) {
+                CoderResult result = flushing ? encoder.flush(buffer) : encoder.encode(value, buffer, true);
+                buffer.flip();
+                write(channel, buffer);
+                buffer.clear();
+                if (result.isUnderflow()) {
+                    if (flushing) {
+                        break;
+                    }
+                    flushing = true;
+                }
+            }
+        }
+        write(channel, ByteBuffer.wrap(SEGMENTS[EXPRESSIONS.length]));
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+                .append("EncodedTemplate [CHARSET=").append(CHARSET)
+                .append(", EXPRESSIONS=").append(EXPRESSIONS.length)
+                .append("]").toString();
+    }
+
+    private CharsetEncoder newEncoder() {
+        return CHARSET.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Checks that the given charset encodes the concatenation of some sample texts as the concatenation of their encodings,
+     * which is not the case of the charsets that write a byte order mark, like UTF-16, nor of the charsets that keep a state, like ISO-2022-JP.
+     */
+    private static Charset checkStateless(Charset charset) {
+        if (!charset.canEncode()) {
+            throw new IllegalArgumentException("The charset " + charset + " does not support encoding.");
+        }
+        for (String first : PROBES) {
+            for (String second : PROBES) {
+                byte[] firstBytes = first.getBytes(charset), secondBytes = second.getBytes(charset);
+                byte[] bytes = Arrays.copyOf(firstBytes, (firstBytes.length + secondBytes.length));
+                System.arraycopy(secondBytes, 0, bytes, firstBytes.length, secondBytes.length);
+                if (!Arrays.equals(bytes, (first + second).getBytes(charset))) {
+                    throw new IllegalArgumentException("The charset " + charset + " writes a byte order mark or keeps a state between the encoded texts, "
+                            + "so the segments of a template cannot be encoded independently.");
+                }
+            }
+        }
+        return charset;
+    }
+
+    private static void write(WritableByteChannel channel, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+}
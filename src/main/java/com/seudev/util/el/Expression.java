@@ -3,8 +3,15 @@ package com.seudev.util.el;
 import static java.util.Objects.requireNonNull;
 
 import java.io.Serializable;
-import java.util.Objects;
 
+/**
+ * An expression found in a template.
+ * <p>
+ * The expressions found in a {@link String} template are backed by the template: they keep only the template reference and the offsets of the expression,
+ * and create the expression strings only when they are first requested, so many parsed templates can be kept in memory without a copy of each expression.
+ * {@link #getExpressionSequence()} and {@link #getSubExpressionSequence()} give views that do not copy the chars, and {@link #getSubExpressionHash()} is
+ * computed once, so the sub-expression can be looked up without creating its string.
+ */
 public class Expression implements Comparable<Expression>, Serializable {
     
     private static final long serialVersionUID = 7932821942395622348L;
@@ -12,11 +19,27 @@ public class Expression implements Comparable<Expression>, Serializable {
     private final int START;
     private final String EXPRESSION;
     private final String SUB_EXPRESSION;
+    private final ExpressionDefinition DEFINITION;
     
     public Expression(int start, String expression, String subExpression) {
+        this(start, expression, subExpression, null);
+    }
+    
+    public Expression(int start, String expression, String subExpression, ExpressionDefinition definition) {
         START = start;
         EXPRESSION = requireNonNull(expression, "expression");
         SUB_EXPRESSION = requireNonNull(subExpression, "subExpression");
+        DEFINITION = definition;
+    }
+    
+    /**
+     * Constructs an expression whose strings are provided by the subclass.
+     */
+    Expression(int start, ExpressionDefinition definition) {
+        START = start;
+        EXPRESSION = null;
+        SUB_EXPRESSION = null;
+        DEFINITION = definition;
     }
     
     @Override
@@ -31,39 +54,106 @@ public class Expression implements Comparable<Expression>, Serializable {
         }
         if (obj instanceof Expression) {
             Expression e = (Expression) obj;
-            return ((START == e.START) && EXPRESSION.equals(e.EXPRESSION));
+            return ((START == e.START) && contentEquals(e.getExpressionSequence()));
         }
         return false;
     }
     
+    /**
+     * Returns the definition that matched this expression.
+     *
+     * @return the definition, or null if this expression was not found by an {@link ExpressionDefinition}
+     */
+    public ExpressionDefinition getDefinition() {
+        return DEFINITION;
+    }
+    
     public int getEnd() {
         return (START + EXPRESSION.length());
     }
     
+    /**
+     * Returns the expression, including the START and the END.
+     *
+     * @return the expression
+     */
     public String getExpression() {
         return EXPRESSION;
     }
     
+    /**
+     * Returns the expression, including the START and the END, without copying it from the template.
+     *
+     * @return a read-only view of the expression
+     */
+    public CharSequence getExpressionSequence() {
+        return EXPRESSION;
+    }
+    
     public int getStart() {
         return START;
     }
     
+    /**
+     * Returns the expression without the START and the END.
+     *
+     * @return the sub-expression
+     */
     public String getSubExpression() {
         return SUB_EXPRESSION;
     }
     
+    /**
+     * Returns the same value of {@code getSubExpression().hashCode()}, without creating the sub-expression string.
+     *
+     * @return the hash code of the sub-expression
+     */
+    public int getSubExpressionHash() {
+        return SUB_EXPRESSION.hashCode();
+    }
+    
+    /**
+     * Returns the expression without the START and the END, without copying it from the template.
+     *
+     * @return a read-only view of the sub-expression
+     */
+    public CharSequence getSubExpressionSequence() {
+        return SUB_EXPRESSION;
+    }
+    
     @Override
     public int hashCode() {
-        return Objects.hash(START, EXPRESSION);
+        return ((31 * (31 + START)) + getExpressionHash());
     }
     
     @Override
     public String toString() {
         return new StringBuilder()
                 .append("Expression [START=").append(START)
-                .append(", EXPRESSION=").append(EXPRESSION)
-                .append(", SUB_EXPRESSION=").append(SUB_EXPRESSION)
+                .append(", EXPRESSION=").append(getExpressionSequence())
+                .append(", SUB_EXPRESSION=").append(getSubExpressionSequence())
                 .append("]").toString();
     }
     
+    /**
+     * Returns whether the expression, including the START and the END, has the same chars of the given sequence.
+     */
+    boolean contentEquals(CharSequence expression) {
+        return EXPRESSION.contentEquals(expression);
+    }
+    
+    /**
+     * Returns this expression, or a copy that holds the expression strings if this expression is backed by its template.
+     */
+    Expression detach() {
+        return this;
+    }
+    
+    /**
+     * Returns the same value of {@code getExpression().hashCode()}.
+     */
+    int getExpressionHash() {
+        return EXPRESSION.hashCode();
+    }
+    
 }
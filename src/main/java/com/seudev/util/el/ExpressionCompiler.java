@@ -0,0 +1,861 @@
+package com.seudev.util.el;
+
+import static java.lang.String.format;
+
+import java.beans.FeatureDescriptor;
+import java.io.ObjectStreamException;
+import java.lang.invoke.MethodHandle;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.el.ELClass;
+import javax.el.ELContext;
+import javax.el.ELException;
+import javax.el.ELManager;
+import javax.el.ELResolver;
+import javax.el.FunctionMapper;
+import javax.el.ImportHandler;
+import javax.el.PropertyNotFoundException;
+import javax.el.PropertyNotWritableException;
+import javax.el.ValueExpression;
+import javax.el.ValueReference;
+import javax.el.VariableMapper;
+
+/**
+ * Compiles the simple EL expressions to trees of functional objects, that evaluate them without the interpretation of the EL implementation.
+ * <p>
+ * The compiled subset is made of the literals, the identifiers, the property paths (<code>order.customer.tier</code> and <code>order['tier']</code>),
+ * the arithmetic, relational, logical and <code>empty</code> operators, and the conditional operator. The expressions that use anything else,
+ * like function and method calls, lambdas, assignments or collection literals, are evaluated by the {@link ValueExpression} of the EL implementation.
+ * <p>
+ * The results follow the EL semantics: the operands of the common types (the boxed integers and floating points, the {@link String}s and the {@link Boolean}s)
+ * are coerced as the EL specification requires, and the operations on the operands of any other type are delegated to the EL implementation.
+ * The properties of the {@link Map}s and of the public getters of the beans are read directly, the getters through {@link MethodHandle}s cached per class,
+ * and the other properties through the {@link ELResolver} of the context. So the compiled expressions assume that no custom {@link ELResolver} of the context
+ * resolves the properties of the maps and of the beans.
+ *
+ * @see ExpressionEvaluator#setDirectCompilation(boolean)
+ */
+public final class ExpressionCompiler {
+
+    private static final RuntimeException UNSUPPORTED = new RuntimeException("The expression is not in the compiled subset.", null, false, false) {
+
+        private static final long serialVersionUID = 4307312213627858313L;
+
+    };
+
+    private static final String[] RESERVED_WORDS = {"and", "or", "not", "eq", "ne", "lt", "gt", "le", "ge", "true", "false", "null", "instanceof", "empty", "div", "mod"};
+
+    private ExpressionCompiler() {
+    }
+
+    /**
+     * Parses the given expression with the EL implementation and, if it is in the compiled subset, compiles it.
+     * The functions and the variables of the given context are resolved now, as in any parsed EL expression.
+     *
+     * @param expression the expression without the bounds ${}
+     * @param context the context that resolves the functions and the variables
+     * @return the compiled expression, or the parsed expression if it is not in the compiled subset
+     * @throws ELException if the expression is not valid
+     */
+    public static ValueExpression compile(String expression, ELContext context) {
+        ValueExpression parsed = ELManager.getExpressionFactory().createValueExpression(context, ("${" + expression + "}"), Object.class);
+        try {
+            return new CompiledValueExpression(parsed, new Parser(expression, context.getVariableMapper()).parse());
+        } catch (RuntimeException ex) {
+            if (ex != UNSUPPORTED) {
+                throw ex;
+            }
+            return parsed;
+        }
+    }
+
+    static boolean isCompiled(ValueExpression expression) {
+        return (expression instanceof CompiledValueExpression);
+    }
+
+    private static boolean isInteger(Object value) {
+        return (value instanceof Long) || (value instanceof Integer) || (value instanceof Short) || (value instanceof Byte);
+    }
+
+    private static boolean isNumber(Object value) {
+        return isInteger(value) || (value instanceof Double) || (value instanceof Float);
+    }
+
+    private static Object add(Object a, Object b) {
+        if (isInteger(a) && isInteger(b)) {
+            return ((Number) a).longValue() + ((Number) b).longValue();
+        }
+        if (isNumber(a) && isNumber(b)) {
+            return ((Number) a).doubleValue() + ((Number) b).doubleValue();
+        }
+        return Operator.ADD.apply(a, b);
+    }
+
+    private static Object subtract(Object a, Object b) {
+        if (isInteger(a) && isInteger(b)) {
+            return ((Number) a).longValue() - ((Number) b).longValue();
+        }
+        if (isNumber(a) && isNumber(b)) {
+            return ((Number) a).doubleValue() - ((Number) b).doubleValue();
+        }
+        return Operator.SUBTRACT.apply(a, b);
+    }
+
+    private static Object multiply(Object a, Object b) {
+        if (isInteger(a) && isInteger(b)) {
+            return ((Number) a).longValue() * ((Number) b).longValue();
+        }
+        if (isNumber(a) && isNumber(b)) {
+            return ((Number) a).doubleValue() * ((Number) b).doubleValue();
+        }
+        return Operator.MULTIPLY.apply(a, b);
+    }
+
+    private static Object divide(Object a, Object b) {
+        if (isNumber(a) && isNumber(b)) {
+            return ((Number) a).doubleValue() / ((Number) b).doubleValue();
+        }
+        return Operator.DIVIDE.apply(a, b);
+    }
+
+    private static Object modulo(Object a, Object b) {
+        if (isInteger(a) && isInteger(b)) {
+            return ((Number) a).longValue() % ((Number) b).longValue();
+        }
+        if (isNumber(a) && isNumber(b)) {
+            return ((Number) a).doubleValue() % ((Number) b).doubleValue();
+        }
+        return Operator.MODULO.apply(a, b);
+    }
+
+    private static Object negate(Object a) {
+        if (a instanceof Long) {
+            return -((Long) a);
+        }
+        if (a instanceof Integer) {
+            return -((Integer) a);
+        }
+        if (a instanceof Double) {
+            return -((Double) a);
+        }
+        if (a instanceof Float) {
+            return -((Float) a);
+        }
+        if (a instanceof Short) {
+            return (short) -((Short) a);
+        }
+        if (a instanceof Byte) {
+            return (byte) -((Byte) a);
+        }
+        return Operator.NEGATE.apply(a, null);
+    }
+
+    private static Boolean equal(Object a, Object b) {
+        if (a == b) {
+            return Boolean.TRUE;
+        }
+        if ((a == null) || (b == null)) {
+            return Boolean.FALSE;
+        }
+        if (isInteger(a) && isInteger(b)) {
+            return (((Number) a).longValue() == ((Number) b).longValue());
+        }
+        if (isNumber(a) && isNumber(b)) {
+            return (Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue()) == 0);
+        }
+        if (((a instanceof String) && (b instanceof String)) || ((a instanceof Boolean) && (b instanceof Boolean))) {
+            return a.equals(b);
+        }
+        return (Boolean) Operator.EQUAL.apply(a, b);
+    }
+
+    /**
+     * Compares the given non-null operands, returning null if they are not of the common types.
+     */
+    private static Integer compare(Object a, Object b) {
+        if (isInteger(a) && isInteger(b)) {
+            return Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+        }
+        if (isNumber(a) && isNumber(b)) {
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        if ((a instanceof String) && (b instanceof String)) {
+            return ((String) a).compareTo((String) b);
+        }
+        return null;
+    }
+
+    private static Boolean compareStrictly(Operator operator, Evaluation left, Evaluation right, ELContext context, boolean lessThan) {
+        Object a = left.getValue(context);
+        if (a == null) {
+            return Boolean.FALSE;
+        }
+        Object b = right.getValue(context);
+        if (b == null) {
+            return Boolean.FALSE;
+        }
+        Integer comparison = compare(a, b);
+        if (comparison == null) {
+            return (Boolean) operator.apply(a, b);
+        }
+        return lessThan ? (comparison < 0) : (comparison > 0);
+    }
+
+    private static Boolean compareOrEqual(Operator operator, Object a, Object b, boolean lessThan) {
+        if (a == b) {
+            return Boolean.TRUE;
+        }
+        if ((a == null) || (b == null)) {
+            return Boolean.FALSE;
+        }
+        Integer comparison = compare(a, b);
+        if (comparison == null) {
+            return (Boolean) operator.apply(a, b);
+        }
+        return lessThan ? (comparison <= 0) : (comparison >= 0);
+    }
+
+    private static Boolean isEmpty(Object value) {
+        if (value == null) {
+            return Boolean.TRUE;
+        }
+        if (value instanceof String) {
+            return ((String) value).isEmpty();
+        }
+        if (value instanceof Object[]) {
+            return (((Object[]) value).length == 0);
+        }
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).isEmpty();
+        }
+        if (value instanceof Map) {
+            return ((Map<?, ?>) value).isEmpty();
+        }
+        return Boolean.FALSE;
+    }
+
+    private static boolean toBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return (Boolean) Operator.BOOLEAN.apply(value, null);
+    }
+
+    private static Object resolveIdentifier(ELContext context, String name) {
+        if (context.isLambdaArgument(name)) {
+            return context.getLambdaArgument(name);
+        }
+        context.setPropertyResolved(false);
+        Object value = context.getELResolver().getValue(context, null, name);
+        if (!context.isPropertyResolved()) {
+            ImportHandler importHandler = context.getImportHandler();
+            Class<?> type = (importHandler == null) ? null : importHandler.resolveStatic(name);
+            if (type != null) {
+                return context.getELResolver().getValue(context, new ELClass(type), name);
+            }
+            throw new PropertyNotFoundException(format("ELResolver cannot handle a null base Object with identifier '%s'", name));
+        }
+        return value;
+    }
+
+    /**
+     * As in the EL implementation, an identifier that is the base of a property and that is not found may name an imported class.
+     */
+    private static Evaluation withImportedClass(Evaluation identifier, String name) {
+        return context -> {
+            try {
+                return identifier.getValue(context);
+            } catch (PropertyNotFoundException ex) {
+                ImportHandler importHandler = context.getImportHandler();
+                Class<?> type = (importHandler == null) ? null : importHandler.resolveClass(name);
+                if (type == null) {
+                    throw ex;
+                }
+                return new ELClass(type);
+            }
+        };
+    }
+
+    private static Object resolveProperty(ELContext context, Object base, Object property) {
+        if (property == null) {
+            return null;
+        }
+        if (base instanceof Map) {
+            context.setPropertyResolved(base, property);
+            return ((Map<?, ?>) base).get(property);
+        }
+        context.setPropertyResolved(false);
+        Object value = context.getELResolver().getValue(context, base, property);
+        if (!context.isPropertyResolved()) {
+            throw new PropertyNotFoundException(format("ELResolver did not handle type: %s with property of '%s'", base.getClass(), property));
+        }
+        return value;
+    }
+
+    /**
+     * A compiled expression, that evaluates its {@link Evaluation} and delegates anything else to the parsed expression.
+     * It is serialized as the parsed expression.
+     */
+    static final class CompiledValueExpression extends ValueExpression {
+
+        private static final long serialVersionUID = -1960361946829526453L;
+
+        private final transient ValueExpression DELEGATE;
+        private final transient Evaluation EVALUATION;
+
+        private CompiledValueExpression(ValueExpression delegate, Evaluation evaluation) {
+            DELEGATE = delegate;
+            EVALUATION = evaluation;
+        }
+
+        @Override
+        public Object getValue(ELContext context) {
+            String expression = DELEGATE.getExpressionString();
+            context.notifyBeforeEvaluation(expression);
+            Object value = context.convertToType(EVALUATION.getValue(context), Object.class);
+            context.notifyAfterEvaluation(expression);
+            return value;
+        }
+
+        @Override
+        public void setValue(ELContext context, Object value) {
+            DELEGATE.setValue(context, value);
+        }
+
+        @Override
+        public boolean isReadOnly(ELContext context) {
+            return DELEGATE.isReadOnly(context);
+        }
+
+        @Override
+        public Class<?> getType(ELContext context) {
+            return DELEGATE.getType(context);
+        }
+
+        @Override
+        public Class<?> getExpectedType() {
+            return DELEGATE.getExpectedType();
+        }
+
+        @Override
+        public ValueReference getValueReference(ELContext context) {
+            return DELEGATE.getValueReference(context);
+        }
+
+        @Override
+        public String getExpressionString() {
+            return DELEGATE.getExpressionString();
+        }
+
+        @Override
+        public boolean isLiteralText() {
+            return DELEGATE.isLiteralText();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof CompiledValueExpression) {
+                return DELEGATE.equals(((CompiledValueExpression) obj).DELEGATE);
+            }
+            return DELEGATE.equals(obj);
+        }
+
+        @Override
+        public int hashCode() {
+            return DELEGATE.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("CompiledValueExpression [DELEGATE=");
+            builder.append(DELEGATE);
+            builder.append("]");
+            return builder.toString();
+        }
+
+        private Object writeReplace() throws ObjectStreamException {
+            return DELEGATE;
+        }
+
+    }
+
+    /**
+     * A compiled expression, or a part of it.
+     */
+    @FunctionalInterface
+    interface Evaluation {
+
+        Object getValue(ELContext context);
+
+    }
+
+    /**
+     * A property of a constant name, read through the getter of the class of each base, see {@link BeanAccessors}.
+     */
+    private static final class NamedProperty {
+
+        private final String NAME;
+
+        private NamedProperty(String name) {
+            NAME = name;
+        }
+
+        private Object getValue(ELContext context, Object base) {
+            if (base instanceof Map) {
+                context.setPropertyResolved(base, NAME);
+                return ((Map<?, ?>) base).get(NAME);
+            }
+            MethodHandle getter = BeanAccessors.getGetter(base.getClass(), NAME);
+            if (getter == null) {
+                return resolveProperty(context, base, NAME);
+            }
+            return BeanAccessors.getValue(context, getter, base, NAME);
+        }
+
+    }
+
+    /**
+     * The operations whose operands are not of the common types, delegated to the EL implementation.
+     * Each one is parsed once to an expression of the operands <code>a</code> and <code>b</code>, evaluated in a context that resolves only them.
+     */
+    private enum Operator {
+
+        ADD("${a + b}"),
+        SUBTRACT("${a - b}"),
+        MULTIPLY("${a * b}"),
+        DIVIDE("${a / b}"),
+        MODULO("${a % b}"),
+        NEGATE("${-a}"),
+        EQUAL("${a == b}"),
+        LESS_THAN("${a < b}"),
+        GREATER_THAN("${a > b}"),
+        LESS_THAN_OR_EQUAL("${a <= b}"),
+        GREATER_THAN_OR_EQUAL("${a >= b}"),
+        BOOLEAN("${a ? true : false}");
+
+        private final String EXPRESSION;
+        private volatile ValueExpression valueExpression;
+
+        private Operator(String expression) {
+            EXPRESSION = expression;
+        }
+
+        private Object apply(Object a, Object b) {
+            ValueExpression expression = valueExpression;
+            if (expression == null) {
+                valueExpression = expression = ELManager.getExpressionFactory().createValueExpression(new OperandContext(null, null), EXPRESSION, Object.class);
+            }
+            return expression.getValue(new OperandContext(a, b));
+        }
+
+    }
+
+    private static final class OperandContext extends ELContext {
+
+        private static final ELResolver RESOLVER = new ELResolver() {
+
+            @Override
+            public Object getValue(ELContext context, Object base, Object property) {
+                if (base != null) {
+                    return null;
+                }
+                OperandContext operands = (OperandContext) context.getContext(OperandContext.class);
+                context.setPropertyResolved(true);
+                return "a".equals(property) ? operands.A : operands.B;
+            }
+
+            @Override
+            public Class<?> getType(ELContext context, Object base, Object property) {
+                return null;
+            }
+
+            @Override
+            public void setValue(ELContext context, Object base, Object property, Object value) {
+                throw new PropertyNotWritableException();
+            }
+
+            @Override
+            public boolean isReadOnly(ELContext context, Object base, Object property) {
+                return true;
+            }
+
+            @Override
+            public Iterator<FeatureDescriptor> getFeatureDescriptors(ELContext context, Object base) {
+                return null;
+            }
+
+            @Override
+            public Class<?> getCommonPropertyType(ELContext context, Object base) {
+                return null;
+            }
+
+        };
+
+        private final Object A;
+        private final Object B;
+
+        private OperandContext(Object a, Object b) {
+            A = a;
+            B = b;
+            putContext(OperandContext.class, this);
+        }
+
+        @Override
+        public ELResolver getELResolver() {
+            return RESOLVER;
+        }
+
+        @Override
+        public FunctionMapper getFunctionMapper() {
+            return null;
+        }
+
+        @Override
+        public VariableMapper getVariableMapper() {
+            return null;
+        }
+
+    }
+
+    /**
+     * Parses the compiled subset of the EL grammar, by recursive descent, throwing {@link ExpressionCompiler#UNSUPPORTED} at anything else.
+     * The expression was already parsed by the EL implementation, so the syntax errors need no reporting.
+     */
+    private static final class Parser {
+
+        private final String TEXT;
+        private final VariableMapper VARIABLE_MAPPER;
+        private int index;
+
+        private Parser(String text, VariableMapper variableMapper) {
+            TEXT = text;
+            VARIABLE_MAPPER = variableMapper;
+        }
+
+        private Evaluation parse() {
+            Evaluation evaluation = parseChoice();
+            skipWhitespace();
+            if (index != TEXT.length()) {
+                throw UNSUPPORTED;
+            }
+            return evaluation;
+        }
+
+        private Evaluation parseChoice() {
+            Evaluation condition = parseOr();
+            if (!accept("?")) {
+                return condition;
+            }
+            Evaluation whenTrue = parseChoice();
+            if (!accept(":")) {
+                throw UNSUPPORTED;
+            }
+            Evaluation whenFalse = parseChoice();
+            return context -> toBoolean(condition.getValue(context)) ? whenTrue.getValue(context) : whenFalse.getValue(context);
+        }
+
+        private Evaluation parseOr() {
+            Evaluation evaluation = parseAnd();
+            while (accept("||") || acceptWord("or")) {
+                Evaluation left = evaluation, right = parseAnd();
+                evaluation = context -> (toBoolean(left.getValue(context)) || toBoolean(right.getValue(context)));
+            }
+            return evaluation;
+        }
+
+        private Evaluation parseAnd() {
+            Evaluation evaluation = parseEquality();
+            while (accept("&&") || acceptWord("and")) {
+                Evaluation left = evaluation, right = parseEquality();
+                evaluation = context -> (toBoolean(left.getValue(context)) && toBoolean(right.getValue(context)));
+            }
+            return evaluation;
+        }
+
+        private Evaluation parseEquality() {
+            Evaluation evaluation = parseRelational();
+            while (true) {
+                Evaluation left = evaluation;
+                if (accept("==") || acceptWord("eq")) {
+                    Evaluation right = parseRelational();
+                    evaluation = context -> equal(left.getValue(context), right.getValue(context));
+                } else if (accept("!=") || acceptWord("ne")) {
+                    Evaluation right = parseRelational();
+                    evaluation = context -> !equal(left.getValue(context), right.getValue(context));
+                } else {
+                    return evaluation;
+                }
+            }
+        }
+
+        private Evaluation parseRelational() {
+            Evaluation evaluation = parseAdditive();
+            while (true) {
+                Evaluation left = evaluation;
+                if (accept("<=") || acceptWord("le")) {
+                    Evaluation right = parseAdditive();
+                    evaluation = context -> compareOrEqual(Operator.LESS_THAN_OR_EQUAL, left.getValue(context), right.getValue(context), true);
+                } else if (accept(">=") || acceptWord("ge")) {
+                    Evaluation right = parseAdditive();
+                    evaluation = context -> compareOrEqual(Operator.GREATER_THAN_OR_EQUAL, left.getValue(context), right.getValue(context), false);
+                } else if (accept("<") || acceptWord("lt")) {
+                    Evaluation right = parseAdditive();
+                    evaluation = context -> compareStrictly(Operator.LESS_THAN, left, right, context, true);
+                } else if (accept(">") || acceptWord("gt")) {
+                    Evaluation right = parseAdditive();
+                    evaluation = context -> compareStrictly(Operator.GREATER_THAN, left, right, context, false);
+                } else {
+                    return evaluation;
+                }
+            }
+        }
+
+        private Evaluation parseAdditive() {
+            Evaluation evaluation = parseMultiplicative();
+            while (true) {
+                Evaluation left = evaluation;
+                skipWhitespace();
+                if (startsWith("+=") || startsWith("->")) {
+                    throw UNSUPPORTED;
+                }
+                if (accept("+")) {
+                    Evaluation right = parseMultiplicative();
+                    evaluation = context -> add(left.getValue(context), right.getValue(context));
+                } else if (accept("-")) {
+                    Evaluation right = parseMultiplicative();
+                    evaluation = context -> subtract(left.getValue(context), right.getValue(context));
+                } else {
+                    return evaluation;
+                }
+            }
+        }
+
+        private Evaluation parseMultiplicative() {
+            Evaluation evaluation = parseUnary();
+            while (true) {
+                Evaluation left = evaluation;
+                if (accept("*")) {
+                    Evaluation right = parseUnary();
+                    evaluation = context -> multiply(left.getValue(context), right.getValue(context));
+                } else if (accept("/") || acceptWord("div")) {
+                    Evaluation right = parseUnary();
+                    evaluation = context -> divide(left.getValue(context), right.getValue(context));
+                } else if (accept("%") || acceptWord("mod")) {
+                    Evaluation right = parseUnary();
+                    evaluation = context -> modulo(left.getValue(context), right.getValue(context));
+                } else {
+                    return evaluation;
+                }
+            }
+        }
+
+        private Evaluation parseUnary() {
+            skipWhitespace();
+            if (startsWith("->")) {
+                throw UNSUPPORTED;
+            }
+            if (accept("-")) {
+                Evaluation operand = parseUnary();
+                return context -> negate(operand.getValue(context));
+            }
+            if ((!startsWith("!=") && accept("!")) || acceptWord("not")) {
+                Evaluation operand = parseUnary();
+                return context -> !toBoolean(operand.getValue(context));
+            }
+            if (acceptWord("empty")) {
+                Evaluation operand = parseUnary();
+                return context -> isEmpty(operand.getValue(context));
+            }
+            return parseValue();
+        }
+
+        private Evaluation parseValue() {
+            skipWhitespace();
+            if (index == TEXT.length()) {
+                throw UNSUPPORTED;
+            }
+            char c = TEXT.charAt(index);
+            if (Character.isDigit(c) || ((c == '.') && ((index + 1) < TEXT.length()) && Character.isDigit(TEXT.charAt(index + 1)))) {
+                return parseNumber();
+            }
+            if ((c == '\'') || (c == '"')) {
+                Object value = parseString(c);
+                return context -> value;
+            }
+            if (accept("(")) {
+                Evaluation evaluation = parseChoice();
+                if (!accept(")")) {
+                    throw UNSUPPORTED;
+                }
+                return parseSuffixes(evaluation);
+            }
+            String identifier = parseIdentifier();
+            switch (identifier) {
+                case "true":
+                    return context -> Boolean.TRUE;
+                case "false":
+                    return context -> Boolean.FALSE;
+                case "null":
+                    return context -> null;
+                default:
+                    skipWhitespace();
+                    if (isReservedWord(identifier) || startsWith("(")) {
+                        throw UNSUPPORTED;
+                    }
+            }
+            ValueExpression variable = (VARIABLE_MAPPER == null) ? null : VARIABLE_MAPPER.resolveVariable(identifier);
+            Evaluation evaluation;
+            if (variable == null) {
+                evaluation = context -> resolveIdentifier(context, identifier);
+            } else {
+                evaluation = context -> context.isLambdaArgument(identifier) ? context.getLambdaArgument(identifier) : variable.getValue(context);
+            }
+            if (startsWith(".") || startsWith("[")) {
+                evaluation = withImportedClass(evaluation, identifier);
+            }
+            return parseSuffixes(evaluation);
+        }
+
+        private Evaluation parseSuffixes(Evaluation base) {
+            Evaluation evaluation = base;
+            while (true) {
+                Evaluation object = evaluation;
+                if (accept(".")) {
+                    NamedProperty property = new NamedProperty(parseIdentifier());
+                    evaluation = context -> {
+                        Object value = object.getValue(context);
+                        return (value == null) ? null : property.getValue(context, value);
+                    };
+                } else if (accept("[")) {
+                    Evaluation property = parseChoice();
+                    if (!accept("]")) {
+                        throw UNSUPPORTED;
+                    }
+                    evaluation = context -> {
+                        Object value = object.getValue(context);
+                        return (value == null) ? null : resolveProperty(context, value, property.getValue(context));
+                    };
+                } else {
+                    return evaluation;
+                }
+                skipWhitespace();
+                if (startsWith("(")) {
+                    throw UNSUPPORTED;
+                }
+            }
+        }
+
+        private Evaluation parseNumber() {
+            int start = index;
+            boolean floatingPoint = false;
+            while ((index < TEXT.length()) && Character.isDigit(TEXT.charAt(index))) {
+                index++;
+            }
+            if ((index < TEXT.length()) && (TEXT.charAt(index) == '.')) {
+                floatingPoint = true;
+                index++;
+                while ((index < TEXT.length()) && Character.isDigit(TEXT.charAt(index))) {
+                    index++;
+                }
+            }
+            if ((index < TEXT.length()) && ((TEXT.charAt(index) == 'e') || (TEXT.charAt(index) == 'E'))) {
+                floatingPoint = true;
+                index++;
+                if ((index < TEXT.length()) && ((TEXT.charAt(index) == '+') || (TEXT.charAt(index) == '-'))) {
+                    index++;
+                }
+                int digits = index;
+                while ((index < TEXT.length()) && Character.isDigit(TEXT.charAt(index))) {
+                    index++;
+                }
+                if (digits == index) {
+                    throw UNSUPPORTED;
+                }
+            }
+            if ((index < TEXT.length()) && Character.isJavaIdentifierPart(TEXT.charAt(index))) {
+                throw UNSUPPORTED;
+            }
+            Object value;
+            try {
+                value = floatingPoint ? (Object) Double.valueOf(TEXT.substring(start, index)) : (Object) Long.valueOf(TEXT.substring(start, index));
+            } catch (NumberFormatException ex) {
+                throw UNSUPPORTED;
+            }
+            return context -> value;
+        }
+
+        private String parseString(char quote) {
+            StringBuilder builder = new StringBuilder();
+            for (index++; index < TEXT.length(); index++) {
+                char c = TEXT.charAt(index);
+                if (c == quote) {
+                    index++;
+                    return builder.toString();
+                }
+                if (c == '\\') {
+                    if (((index + 1) == TEXT.length()) || ((TEXT.charAt(index + 1) != '\\') && (TEXT.charAt(index + 1) != quote))) {
+                        throw UNSUPPORTED;
+                    }
+                    c = TEXT.charAt(++index);
+                }
+                builder.append(c);
+            }
+            throw UNSUPPORTED;
+        }
+
+        private String parseIdentifier() {
+            skipWhitespace();
+            if ((index == TEXT.length()) || !Character.isJavaIdentifierStart(TEXT.charAt(index))) {
+                throw UNSUPPORTED;
+            }
+            int start = index;
+            while ((index < TEXT.length()) && Character.isJavaIdentifierPart(TEXT.charAt(index))) {
+                index++;
+            }
+            return TEXT.substring(start, index);
+        }
+
+        private boolean accept(String token) {
+            skipWhitespace();
+            if (startsWith(token)) {
+                index += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private boolean acceptWord(String word) {
+            skipWhitespace();
+            int end = (index + word.length());
+            if (startsWith(word) && ((end == TEXT.length()) || !Character.isJavaIdentifierPart(TEXT.charAt(end)))) {
+                index = end;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean startsWith(String token) {
+            return TEXT.startsWith(token, index);
+        }
+
+        private void skipWhitespace() {
+            while ((index < TEXT.length()) && Character.isWhitespace(TEXT.charAt(index))) {
+                index++;
+            }
+        }
+
+        private static boolean isReservedWord(String identifier) {
+            for (String word : RESERVED_WORDS) {
+                if (word.equals(identifier)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+    }
+
+}
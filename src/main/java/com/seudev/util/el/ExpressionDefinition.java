@@ -3,17 +3,27 @@ package com.seudev.util.el;
 import static com.seudev.util.el.ExpressionDefinitions.ofDoubleQuoteLiteral;
 import static com.seudev.util.el.ExpressionDefinitions.ofSingleQuoteLiteral;
 import static java.lang.String.format;
-import static java.util.Collections.unmodifiableSortedMap;
-import static java.util.Collections.unmodifiableSortedSet;
+import static java.util.Objects.requireNonNull;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.io.Serializable;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.seudev.util.data.BoundedCache;
 
 public class ExpressionDefinition implements Serializable {
 
@@ -24,16 +34,64 @@ public class ExpressionDefinition implements Serializable {
     private final char ESCAPE;
     private final boolean IGNORE_SINGLE_QUOTE_LITERAL;
     private final boolean IGNORE_DOUBLE_QUOTE_LITERAL;
+    private final ScannerShape SCANNER_SHAPE;
+    private final ExpressionScanner SCANNER;
+
+    private transient volatile BoundedCache<String, ExpressionScan> parseCache;
 
     public ExpressionDefinition(String start, String end, char escape, boolean ignoreSingleQuoteLiteral, boolean ignoreDoubleQuoteLiteral) {
+        this(start, end, escape, ignoreSingleQuoteLiteral, ignoreDoubleQuoteLiteral, ScannerShape.of(start, end));
+    }
+
+    /**
+     * Constructs a definition that scans its templates with the scanner of the given shape, instead of the most specialized one.
+     *
+     * @param start the START of the expressions
+     * @param end the END of the expressions
+     * @param escape the char that escapes the next char
+     * @param ignoreSingleQuoteLiteral whether the text between single quotes is ignored
+     * @param ignoreDoubleQuoteLiteral whether the text between double quotes is ignored
+     * @param scannerShape the shape of the scanner, which must support the START and the END
+     */
+    public ExpressionDefinition(String start, String end, char escape, boolean ignoreSingleQuoteLiteral, boolean ignoreDoubleQuoteLiteral, ScannerShape scannerShape) {
         if (start.isEmpty() || end.isEmpty()) {
             throw new ExpressionException("Syntax error: The open and close arguments must be not empty");
         }
+        if (!scannerShape.supports(start, end)) {
+            throw new ExpressionException("Syntax error: The scanner shape " + scannerShape + " does not support the open and close arguments: " + start + " " + end);
+        }
         START = start;
         END = end;
         ESCAPE = escape;
         IGNORE_SINGLE_QUOTE_LITERAL = ignoreSingleQuoteLiteral;
         IGNORE_DOUBLE_QUOTE_LITERAL = ignoreDoubleQuoteLiteral;
+        SCANNER_SHAPE = scannerShape;
+        SCANNER = scannerShape.newScanner(start, end, escape, ignoreSingleQuoteLiteral, ignoreDoubleQuoteLiteral);
+    }
+
+    /**
+     * Returns whether the given template contains an expression, scanning it only until the first expression is found.
+     *
+     * @param template the text that may contain expressions
+     * @return true if the template contains an expression
+     */
+    public boolean containsExpression(CharSequence template) {
+        return expressions(template).findFirst().isPresent();
+    }
+
+    /**
+     * Returns a lazy stream of the expressions of the given template.
+     * The template is scanned only as far as the stream is consumed, so short-circuiting operations stop the scan at the first matching expression.
+     *
+     * @param template the text that contains the expressions
+     * @return the expressions, in order of their start index
+     */
+    public Stream<Expression> expressions(CharSequence template) {
+        return expressions(template, 0);
+    }
+
+    public Stream<Expression> expressions(CharSequence template, int offset) {
+        return StreamSupport.stream(new ExpressionSpliterator(this, template, offset), false);
     }
 
     public SortedMap<Expression, SortedSet<Integer>> findAll(String template) {
@@ -41,17 +99,110 @@ public class ExpressionDefinition implements Serializable {
     }
 
     public SortedMap<Expression, SortedSet<Integer>> findAll(String template, int offset) {
-        SortedSet<Expression> expressions = new TreeSet<>();
-        int currentOffset = offset, startExpressionIndex = offset;
-        while (startExpressionIndex >= 0) {
-            startExpressionIndex = indexOf(template, currentOffset);
-            if (startExpressionIndex >= 0) {
-                Expression expression = getExpression(template, startExpressionIndex);
-                expressions.add(expression);
-                currentOffset = expression.getEnd();
-            }
+        return scan(template, offset).asSortedMap();
+    }
+
+    /**
+     * Finds all expressions of the given template without copying it to a {@link String}.
+     * The found expressions do not reference the given template, so it may be reused after this method returns.
+     *
+     * @param template the text that contains the expressions
+     * @return the expressions and their removable escape indexes
+     */
+    public SortedMap<Expression, SortedSet<Integer>> findAll(CharSequence template) {
+        return findAll(template, 0);
+    }
+
+    public SortedMap<Expression, SortedSet<Integer>> findAll(CharSequence template, int offset) {
+        if (template instanceof String) {
+            return findAll((String) template, offset);
+        }
+        return scan(template, offset).asSortedMap();
+    }
+
+    /**
+     * Finds all expressions of the template stored in the given range of the array, without copying it.
+     * The indexes of the result are relative to the given offset.
+     *
+     * @param template the array that contains the template
+     * @param offset the index of the first char of the template
+     * @param length the length of the template
+     * @return the expressions and their removable escape indexes
+     */
+    public SortedMap<Expression, SortedSet<Integer>> findAll(char[] template, int offset, int length) {
+        return findAll(CharBuffer.wrap(template, offset, length));
+    }
+
+    public ExpressionScan scan(String template) {
+        return scan(template, 0);
+    }
+
+    public ExpressionScan scan(CharSequence template) {
+        return scan(template, 0);
+    }
+
+    public ExpressionScan scan(CharSequence template, int offset) {
+        if (template instanceof String) {
+            return scan((String) template, offset);
+        }
+        return scanTemplate(template, offset, ScanLimits.NONE);
+    }
+
+    /**
+     * Scans the given untrusted template, stopping as soon as one of the given limits is exceeded.
+     * The scan is never cached, and takes time linear in the template length whatever the limits are,
+     * so the limits only bound how much of a hostile template is read before it is rejected.
+     *
+     * @param template the text that contains the expressions
+     * @param limits the limits of the scan
+     * @return the expressions and the removable escape indexes
+     * @throws ScanLimitException if a limit is exceeded
+     */
+    public ExpressionScan scan(CharSequence template, ScanLimits limits) {
+        return scanTemplate(template, 0, requireNonNull(limits, "limits"));
+    }
+
+    /**
+     * Scans the template stored in the given range of the array, without copying it.
+     * The indexes of the result are relative to the given offset.
+     *
+     * @param template the array that contains the template
+     * @param offset the index of the first char of the template
+     * @param length the length of the template
+     * @return the expressions and the removable escape indexes
+     */
+    public ExpressionScan scan(char[] template, int offset, int length) {
+        return scan(CharBuffer.wrap(template, offset, length));
+    }
+
+    /**
+     * Finds all expressions of the given template, like {@link #findAll(String, int)}, but returns the compact {@link ExpressionScan} representation.
+     *
+     * @param template the text that contains the expressions
+     * @param offset the index from which the expressions are searched
+     * @return the expressions and the removable escape indexes
+     */
+    public ExpressionScan scan(String template, int offset) {
+        BoundedCache<String, ExpressionScan> cache = parseCache;
+        if ((cache != null) && (offset == 0)) {
+            return cache.computeIfAbsent(template, t -> scanTemplate(t, 0, ScanLimits.NONE));
         }
-        return getRemovableEscapeIndexes(template, expressions, offset);
+        return scanTemplate(template, offset, ScanLimits.NONE);
+    }
+
+    /**
+     * Scans the given template once and returns a reusable {@link CompiledTemplate}.
+     * The escape chars are removed from the literal segments at compile time, so each render only appends the segments and the formatted expressions.
+     *
+     * @param template the text that contains the expressions
+     * @return the compiled template
+     */
+    public CompiledTemplate compile(String template) {
+        return compile(template, 0);
+    }
+
+    public CompiledTemplate compile(String template, int offset) {
+        return new CompiledTemplate(template, ExpressionScan.of(findAll(template, offset)));
     }
 
     public String getEnd() {
@@ -70,8 +221,11 @@ public class ExpressionDefinition implements Serializable {
      * @return the complete expression without the bounds parentheses
      */
     public Expression getExpression(String template, int startExpressionIndex) {
-        String subExpression = template.substring((startExpressionIndex + START.length()), getExpressionEndIndex(template, startExpressionIndex));
-        return new Expression(startExpressionIndex, (START + subExpression + END), subExpression);
+        return getExpression((CharSequence) template, startExpressionIndex);
+    }
+
+    public Expression getExpression(CharSequence template, int startExpressionIndex) {
+        return newExpression(template, startExpressionIndex, getExpressionEndIndex(template, startExpressionIndex));
     }
 
     /**
@@ -82,35 +236,23 @@ public class ExpressionDefinition implements Serializable {
      * @return the index
      */
     public int getExpressionEndIndex(String template, int startExpressionIndex) {
-        int openeds = 0;
-        for (int i = (startExpressionIndex + START.length()); i < template.length(); i++) {
-            char c = template.charAt(i);
+        return getExpressionEndIndex((CharSequence) template, startExpressionIndex);
+    }
 
-            if (isEscapeChar(c)) {
-                i++;
-                continue;
-            }
-            if (ignoreSingleQuoteLiteral(c)) {
-                i = ofSingleQuoteLiteral().getExpressionEndIndex(template, i);
-                continue;
-            }
-            if (ignoreDoubleQuoteLiteral(c)) {
-                i = ofDoubleQuoteLiteral().getExpressionEndIndex(template, i);
-                continue;
-            }
-            if (template.startsWith(END, i)) {
-                if (openeds == 0) {
-                    return i;
-                }
-                openeds--;
-            } else if (template.startsWith(START, i)) {
-                openeds++;
-            }
+    public int getExpressionEndIndex(CharSequence template, int startExpressionIndex) {
+        int endExpressionIndex = SCANNER.getExpressionEndIndex(template, startExpressionIndex);
+        if (endExpressionIndex >= 0) {
+            return endExpressionIndex;
         }
-        throw new ExpressionException(format("Syntax error, insert \"%s\" to complete the expression: %s\nOr use the escape char %s before of the %s to escape this expression.",
-                END,
-                template.subSequence(startExpressionIndex, template.length()),
-                ESCAPE, START));
+        throw newSyntaxException(template, startExpressionIndex, endExpressionIndex);
+    }
+
+    public BoundedCache<String, ExpressionScan> getParseCache() {
+        return parseCache;
+    }
+
+    public ScannerShape getScannerShape() {
+        return SCANNER_SHAPE;
     }
 
     public String getStart() {
@@ -118,26 +260,15 @@ public class ExpressionDefinition implements Serializable {
     }
 
     public int indexOf(String template, int offset) {
-        for (int i = offset; i < template.length(); i++) {
-            char c = template.charAt(i);
+        return indexOf((CharSequence) template, offset);
+    }
 
-            if (isEscapeChar(c)) {
-                i++;
-                continue;
-            }
-            if (ignoreSingleQuoteLiteral(c)) {
-                i = ofSingleQuoteLiteral().getExpressionEndIndex(template, i);
-                continue;
-            }
-            if (ignoreDoubleQuoteLiteral(c)) {
-                i = ofDoubleQuoteLiteral().getExpressionEndIndex(template, i);
-                continue;
-            }
-            if (template.startsWith(START, i)) {
-                return i;
-            }
+    public int indexOf(CharSequence template, int offset) {
+        int index = SCANNER.indexOf(template, offset, null);
+        if (index < ExpressionScanner.NOT_FOUND) {
+            throw newSyntaxException(template, offset, index);
         }
-        return -1;
+        return index;
     }
 
     public String interpolate(String template, Function<Expression, ?> formatter) {
@@ -148,36 +279,123 @@ public class ExpressionDefinition implements Serializable {
         return interpolate(template, findAll(template, offset), formatter);
     }
 
-    public String interpolate(String template, SortedMap<Expression, SortedSet<Integer>> expressions, Function<Expression, ?> formatter) {
-        if (expressions.isEmpty()) {
-            return template;
-        }
-        StringBuilder builder = new StringBuilder(template);
-        int offsetBuilder = 0;
-        Set<Entry<Expression, SortedSet<Integer>>> entrySet = expressions.entrySet();
-        for (Entry<Expression, SortedSet<Integer>> entry : entrySet) {
-            Expression expression = entry.getKey();
-
-            offsetBuilder = removePreviousEscapes(builder, offsetBuilder, entry.getValue(), expression);
-
-            int startIndex = (offsetBuilder + expression.getStart());
-            int expressionLength = expression.getExpression().length();
-            Object value;
-            try {
-                value = formatter.apply(expression);
-                if (value == null) {
-                    throw new ExpressionException("The expression value must be not null.");
-                }
-            } catch (RuntimeException ex) {
-                throw new ExpressionException("The expression cannot be interpolate: " + expression.getExpression(), ex);
-            }
-            String formattedValue = value.toString();
-            builder.replace(startIndex, (startIndex + expressionLength), formattedValue);
-            offsetBuilder += (formattedValue.length() - expressionLength);
+    public String interpolate(CharSequence template, Function<Expression, ?> formatter) {
+        return interpolate(template, 0, formatter);
+    }
 
-            offsetBuilder = removeNextEscapes(builder, offsetBuilder, entry.getValue(), expression);
+    public String interpolate(CharSequence template, int offset, Function<Expression, ?> formatter) {
+        if (template instanceof String) {
+            return interpolate((String) template, offset, formatter);
         }
-        return builder.toString();
+        return interpolateExpressions(template, scan(template, offset), formatter);
+    }
+
+    /**
+     * Interpolates the template stored in the given range of the array, without copying it to a {@link String} before the interpolation.
+     *
+     * @param template the array that contains the template
+     * @param offset the index of the first char of the template
+     * @param length the length of the template
+     * @param formatter the function that returns the value of each expression
+     * @return the interpolated text
+     */
+    public String interpolate(char[] template, int offset, int length, Function<Expression, ?> formatter) {
+        return interpolate(CharBuffer.wrap(template, offset, length), formatter);
+    }
+
+    /**
+     * Interpolates the template read from the given reader, writing the result to the given output while the template is read.
+     * The template is never fully loaded in memory: only the expression being read is buffered, so the used memory depends on the longest expression instead of the template length.
+     * <p>
+     * Unlike {@link #interpolate(String, Function)}, the escape chars are removed even if the template has no expression.
+     * If the template has a syntax error, the text that precedes the error may already have been written to the output when the {@link ExpressionException} is thrown.
+     * The expressions that start after the index {@link Integer#MAX_VALUE} have the start -1.
+     *
+     * @param in the reader of the template, it is not closed by this method
+     * @param out the output of the interpolated text
+     * @param formatter the function that returns the value of each expression
+     * @throws IOException if an I/O error occurs while reading or writing
+     */
+    public void interpolate(Reader in, Appendable out, Function<Expression, ?> formatter) throws IOException {
+        new StreamInterpolator(this, in, out, formatter).interpolate();
+    }
+
+    /**
+     * Interpolates the given template, expanding recursively the values that contain expressions too.
+     *
+     * @param template the text that contains the expressions
+     * @param values the function that returns the value of the sub-expression of each expression, or null if it is not defined
+     * @return the interpolated text
+     * @see RecursiveInterpolator
+     */
+    public String interpolateRecursively(CharSequence template, Function<String, ?> values) {
+        return new RecursiveInterpolator(this, values).interpolate(template);
+    }
+
+    public String interpolate(CharSequence template, ExpressionScan scan, Function<Expression, ?> formatter) {
+        return interpolateExpressions(template, scan, formatter);
+    }
+
+    public String interpolate(String template, SortedMap<Expression, SortedSet<Integer>> expressions, Function<Expression, ?> formatter) {
+        return interpolateExpressions(template, ExpressionScan.of(expressions), formatter);
+    }
+
+    /**
+     * Interpolates the given template once for each record of the given stream, scanning the template only once.
+     *
+     * @param <R> the type of the records
+     * @param template the text that contains the expressions
+     * @param records the records
+     * @param formatter the function that returns the value of an expression for a record
+     * @return the lazy stream of the interpolated texts
+     * @see CompiledTemplate#renderAll(Stream, BiFunction)
+     */
+    public <R> Stream<String> interpolateAll(String template, Stream<R> records, BiFunction<Expression, ? super R, ?> formatter) {
+        return compile(template).renderAll(records, formatter);
+    }
+
+    /**
+     * Interpolates the given template once for each of the given records, scanning the template only once and rendering in parallel in the given executor.
+     *
+     * @param <R> the type of the records
+     * @param template the text that contains the expressions
+     * @param records the records
+     * @param formatter the function that returns the value of an expression for a record
+     * @param consumer the consumer of each record and its interpolated text
+     * @param executor the executor of the renders, or null to use the common fork-join pool
+     * @param maximumInFlight the maximum number of pending renders
+     * @param ordered whether the interpolated texts must be consumed in the order of the records
+     * @see CompiledTemplate#renderAll(Iterable, BiFunction, BiConsumer, Executor, int, boolean)
+     */
+    public <R> void interpolateAll(String template, Iterable<R> records, BiFunction<Expression, ? super R, ?> formatter, BiConsumer<? super R, ? super String> consumer, Executor executor, int maximumInFlight, boolean ordered) {
+        compile(template).renderAll(records, formatter, consumer, executor, maximumInFlight, ordered);
+    }
+
+    /**
+     * Interpolates the given template resolving the expressions asynchronously.
+     *
+     * @param template the text that contains the expressions
+     * @param formatter the function that starts the resolution of the value of an expression
+     * @return the future of the interpolated text
+     * @see CompiledTemplate#renderAsync(Function)
+     */
+    public CompletableFuture<String> interpolateAsync(String template, Function<Expression, ? extends CompletionStage<?>> formatter) {
+        return compile(template).renderAsync(formatter);
+    }
+
+    /**
+     * Interpolates the given template resolving the expressions asynchronously, with a timeout and a fallback for each expression.
+     *
+     * @param template the text that contains the expressions
+     * @param formatter the function that starts the resolution of the value of an expression
+     * @param timeout the maximum time to wait for each expression, or zero to wait indefinitely
+     * @param unit the unit of the timeout
+     * @param fallback the function that returns the value of an expression whose resolution failed, or null
+     * @return the future of the interpolated text
+     * @see CompiledTemplate#renderAsync(Function, long, TimeUnit, Function)
+     */
+    public CompletableFuture<String> interpolateAsync(String template, Function<Expression, ? extends CompletionStage<?>> formatter, long timeout, TimeUnit unit, Function<Expression, ?> fallback) {
+        return compile(template).renderAsync(formatter, timeout, unit, fallback);
     }
 
     public boolean isIgnoreDoubleQuoteLiteral() {
@@ -188,6 +406,133 @@ public class ExpressionDefinition implements Serializable {
         return IGNORE_SINGLE_QUOTE_LITERAL;
     }
 
+    /**
+     * Sets the in-process cache of the results of {@link #scan(String)}, that is also used by {@link #findAll(String)}, {@link #interpolate(String, Function)} and {@link #compile(String)}.
+     * The cache works without a JCache interceptor, so it also takes effect on the instances returned by {@link ExpressionDefinitions}.
+     * Only the scans that start at the offset zero are cached.
+     * <h1>Example:</h1>
+     * <pre>
+     * ofDollarCurlyBracket().setParseCache(new BoundedCache&lt;&gt;(1000, 10_000_000, (template, scan) -&gt; template.length(), 16));
+     * </pre>
+     *
+     * @param parseCache the cache keyed by the template, or null to disable the cache
+     */
+    public void setParseCache(BoundedCache<String, ExpressionScan> parseCache) {
+        this.parseCache = parseCache;
+    }
+
+    /**
+     * Validates the given template without throwing, reporting all its syntax errors.
+     *
+     * @param template the template
+     * @return the errors and the recovered expressions
+     * @see #validate(CharSequence, int)
+     */
+    public TemplateDiagnostics validate(CharSequence template) {
+        return validate(template, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Validates the given template without throwing.
+     * The validation is lenient: the START of an unclosed expression and the quote of an unclosed quote literal are read as plain text,
+     * so the scan continues and the well-formed expressions are recovered. The errors hold only their offsets, so no text is copied for them.
+     * <p>
+     * An unclosed expression, or an expression with an unclosed quote literal, is read up to the end of the template,
+     * so every START that follows it is reported as an unclosed expression without being read again.
+     * Likewise, an unclosed quote literal is read up to the end of the template, so every quote that follows it is reported as an unclosed quote literal
+     * without being read again, while the following expressions are still recovered. Thus the validation is linear in the template length.
+     *
+     * @param template the template
+     * @param maximumErrors the number of errors after which the validation stops, for example 1 to only check whether the template is valid
+     * @return the errors and the recovered expressions
+     */
+    public TemplateDiagnostics validate(CharSequence template, int maximumErrors) {
+        return validate(template, maximumErrors, ScanLimits.NONE);
+    }
+
+    /**
+     * Validates the given untrusted template without throwing, like {@link #validate(CharSequence, int)}.
+     * When a limit is exceeded, a {@link TemplateDiagnostics.ErrorKind#LIMIT_EXCEEDED} error is reported and the validation stops.
+     * The maximum expression length also bounds the text read for each unclosed expression.
+     *
+     * @param template the template
+     * @param maximumErrors the number of errors after which the validation stops
+     * @param limits the limits of the scan
+     * @return the errors and the recovered expressions
+     */
+    public TemplateDiagnostics validate(CharSequence template, int maximumErrors, ScanLimits limits) {
+        List<Expression> expressions = new ArrayList<>();
+        IntList errorOffsets = new IntList();
+        List<TemplateDiagnostics.ErrorKind> errorKinds = new ArrayList<>();
+        int offset = 0, unclosedQuoteIndex = ExpressionScanner.NOT_FOUND;
+        boolean unclosed = false, unclosedQuote = false, truncated;
+        try {
+            while (errorOffsets.size() < maximumErrors) {
+                int startExpressionIndex;
+                if (unclosedQuote) {
+                    // The previous unclosed quote literal was read up to the end of the template, so the following quotes are not read again as quote literals.
+                    startExpressionIndex = SCANNER.indexOfStartOrQuote(template, offset);
+                    if ((startExpressionIndex != ExpressionScanner.NOT_FOUND) && SCANNER.isSkippedQuote(template.charAt(startExpressionIndex))) {
+                        startExpressionIndex = ExpressionScanner.unclosedQuoteLiteral(startExpressionIndex);
+                    }
+                } else {
+                    startExpressionIndex = SCANNER.indexOf(template, offset, null, limits);
+                }
+                if (startExpressionIndex == ExpressionScanner.NOT_FOUND) {
+                    break;
+                }
+                if (startExpressionIndex < ExpressionScanner.NOT_FOUND) {
+                    int quoteIndex = ExpressionScanner.getUnclosedQuoteLiteralIndex(startExpressionIndex);
+                    // The quote literal may have been reported already, as part of the unclosed expression that contains it.
+                    if (quoteIndex != unclosedQuoteIndex) {
+                        errorOffsets.add(quoteIndex);
+                        errorKinds.add(TemplateDiagnostics.ErrorKind.UNCLOSED_QUOTE_LITERAL);
+                    }
+                    offset = (quoteIndex + 1);
+                    unclosedQuote = true;
+                    continue;
+                }
+                if (unclosed) {
+                    // The previous unclosed expression was read up to the end of the template, so it is not read again from each following START.
+                    errorOffsets.add(startExpressionIndex);
+                    errorKinds.add(TemplateDiagnostics.ErrorKind.UNCLOSED_EXPRESSION);
+                    offset = (startExpressionIndex + START.length());
+                    continue;
+                }
+                if (expressions.size() >= limits.getMaximumExpressionCount()) {
+                    throw new ScanLimitException(ScanLimits.Limit.EXPRESSION_COUNT, startExpressionIndex);
+                }
+                int endExpressionIndex = SCANNER.getExpressionEndIndex(template, startExpressionIndex, limits);
+                if (endExpressionIndex >= 0) {
+                    expressions.add(newExpression(template, startExpressionIndex, endExpressionIndex));
+                    offset = (endExpressionIndex + END.length());
+                } else if (endExpressionIndex == ExpressionScanner.NOT_FOUND) {
+                    errorOffsets.add(startExpressionIndex);
+                    errorKinds.add(TemplateDiagnostics.ErrorKind.UNCLOSED_EXPRESSION);
+                    offset = (startExpressionIndex + START.length());
+                    unclosed = true;
+                } else {
+                    unclosedQuoteIndex = ExpressionScanner.getUnclosedQuoteLiteralIndex(endExpressionIndex);
+                    errorOffsets.add(unclosedQuoteIndex);
+                    errorKinds.add(TemplateDiagnostics.ErrorKind.UNCLOSED_QUOTE_LITERAL);
+                    offset = (startExpressionIndex + START.length());
+                    unclosed = true;
+                }
+            }
+            truncated = (errorOffsets.size() >= maximumErrors);
+            if (truncated) {
+                int next = unclosedQuote ? SCANNER.indexOfStartOrQuote(template, offset) : SCANNER.indexOf(template, offset, null, limits);
+                truncated = (next != ExpressionScanner.NOT_FOUND);
+            }
+        } catch (ScanLimitException ex) {
+            errorOffsets.add(ex.getIndex());
+            errorKinds.add(TemplateDiagnostics.ErrorKind.LIMIT_EXCEEDED);
+            truncated = true;
+        }
+        return new TemplateDiagnostics(expressions.toArray(new Expression[expressions.size()]), errorOffsets.toArray(),
+                errorKinds.toArray(new TemplateDiagnostics.ErrorKind[errorKinds.size()]), truncated);
+    }
+
     @Override
     public String toString() {
         return new StringBuilder()
@@ -199,76 +544,126 @@ public class ExpressionDefinition implements Serializable {
                 .append("]").toString();
     }
 
-    private void addEscapeIndexes(String template, int offset, int limit, SortedSet<Integer> removableEscapeIndexes) {
-        for (int i = offset; i < limit; i++) {
-            char c = template.charAt(i);
-
-            if (ignoreSingleQuoteLiteral(c)) {
-                i = ofSingleQuoteLiteral().getExpressionEndIndex(template, i);
-                continue;
-            }
-            if (ignoreDoubleQuoteLiteral(c)) {
-                i = ofDoubleQuoteLiteral().getExpressionEndIndex(template, i);
-                continue;
+    static String interpolateExpressions(CharSequence template, ExpressionScan scan, Function<Expression, ?> formatter) {
+        if (scan.isEmpty()) {
+            return template.toString();
+        }
+        StringBuilder builder = new StringBuilder(template.length());
+        int[] escapes = scan.ESCAPES;
+        int index = 0, e = 0;
+        for (Expression expression : scan.EXPRESSIONS) {
+            for (; (e < escapes.length) && (escapes[e] < expression.getStart()); e++) {
+                builder.append(template, index, escapes[e]);
+                index = (escapes[e] + 1);
             }
+            builder.append(template, index, expression.getStart()).append(formatExpression(expression, formatter));
+            index = expression.getEnd();
+        }
+        for (; e < escapes.length; e++) {
+            builder.append(template, index, escapes[e]);
+            index = (escapes[e] + 1);
+        }
+        return builder.append(template, index, template.length()).toString();
+    }
 
-            if (isEscapeChar(c)) {
-                removableEscapeIndexes.add(i);
-                i++;
+    static String formatExpression(Expression expression, Function<Expression, ?> formatter) {
+        ExpressionListener listener = ExpressionListeners.getListener();
+        long start = (listener == ExpressionListener.NOOP) ? 0 : System.nanoTime();
+        Object value;
+        try {
+            value = formatter.apply(expression);
+            if (value == null) {
+                throw new ExpressionException("The expression value must be not null.");
             }
+        } catch (RuntimeException ex) {
+            listener.onFormatFailure(expression, ex);
+            throw new ExpressionException("The expression cannot be interpolate: " + expression.getExpression(), ex);
+        }
+        if (listener != ExpressionListener.NOOP) {
+            listener.onFormat(expression, (System.nanoTime() - start));
         }
+        return value.toString();
     }
 
-    private SortedMap<Expression, SortedSet<Integer>> getRemovableEscapeIndexes(String template, SortedSet<Expression> expressions, int offset) {
-        SortedMap<Expression, SortedSet<Integer>> map = new TreeMap<>();
-        for (Expression expression : expressions) {
-            SortedSet<Integer> removableEscapeIndexes = new TreeSet<>();
-
-            addEscapeIndexes(template, offset, expression.getStart(), removableEscapeIndexes);
+    private ExpressionScan scanTemplate(CharSequence template, int offset, ScanLimits limits) {
+        ExpressionListener listener = ExpressionListeners.getListener();
+        if (listener == ExpressionListener.NOOP) {
+            return scanExpressions(template, offset, limits);
+        }
+        long start = System.nanoTime();
+        ExpressionScan scan;
+        try {
+            scan = scanExpressions(template, offset, limits);
+        } catch (RuntimeException ex) {
+            listener.onScanFailure(template, ex);
+            throw ex;
+        }
+        listener.onScan(template, scan.size(), scan.getEscapeCount(), (System.nanoTime() - start));
+        return scan;
+    }
 
-            if (expression == expressions.last()) {
-                addEscapeIndexes(template, expression.getEnd(), template.length(), removableEscapeIndexes);
+    private ExpressionScan scanExpressions(CharSequence template, int offset, ScanLimits limits) {
+        List<Expression> expressions = new ArrayList<>();
+        IntList escapesBounds = new IntList();
+        IntList escapes = new IntList();
+        int firstEscape = 0, startExpressionIndex;
+        while ((startExpressionIndex = SCANNER.indexOf(template, offset, escapes, limits)) >= 0) {
+            if (expressions.size() >= limits.getMaximumExpressionCount()) {
+                throw new ScanLimitException(ScanLimits.Limit.EXPRESSION_COUNT, startExpressionIndex);
             }
-            map.put(expression, unmodifiableSortedSet(removableEscapeIndexes));
+            int endExpressionIndex = SCANNER.getExpressionEndIndex(template, startExpressionIndex, limits);
+            if (endExpressionIndex < 0) {
+                throw newSyntaxException(template, startExpressionIndex, endExpressionIndex);
+            }
+            Expression expression = newExpression(template, startExpressionIndex, endExpressionIndex);
+            expressions.add(expression);
+            escapesBounds.add(firstEscape);
+            firstEscape = escapes.size();
             offset = expression.getEnd();
         }
-        return unmodifiableSortedMap(map);
+        if (startExpressionIndex < ExpressionScanner.NOT_FOUND) {
+            throw newSyntaxException(template, offset, startExpressionIndex);
+        }
+        if (expressions.isEmpty()) {
+            return ExpressionScan.EMPTY;
+        }
+        escapesBounds.add(escapes.size());
+        return new ExpressionScan(expressions.toArray(new Expression[expressions.size()]), escapes.toArray(), escapesBounds.toArray());
     }
 
-    private boolean ignoreDoubleQuoteLiteral(char c) {
-        return IGNORE_DOUBLE_QUOTE_LITERAL && (c == '"') && ((c != START.charAt(0)) || (START.length() > 1));
+    private Expression newExpression(CharSequence template, int startExpressionIndex, int endExpressionIndex) {
+        if (template instanceof String) {
+            return new TemplateExpression((String) template, startExpressionIndex, (endExpressionIndex + END.length()), (startExpressionIndex + START.length()), endExpressionIndex, this);
+        }
+        String subExpression = template.subSequence((startExpressionIndex + START.length()), endExpressionIndex).toString();
+        return new Expression(startExpressionIndex, (START + subExpression + END), subExpression, this);
     }
 
-    private boolean ignoreSingleQuoteLiteral(char c) {
-        return IGNORE_SINGLE_QUOTE_LITERAL && (c == '\'') && ((c != START.charAt(0)) || (START.length() > 1));
+    /**
+     * Creates the exception of a search that did not close the expression that starts in the given index, or that found an unclosed quote literal.
+     */
+    private ExpressionException newSyntaxException(CharSequence template, int startExpressionIndex, int code) {
+        if (code != ExpressionScanner.NOT_FOUND) {
+            int quoteIndex = ExpressionScanner.getUnclosedQuoteLiteralIndex(code);
+            ExpressionDefinition literal = (template.charAt(quoteIndex) == '\'') ? ofSingleQuoteLiteral() : ofDoubleQuoteLiteral();
+            return literal.newSyntaxException(template, quoteIndex, ExpressionScanner.NOT_FOUND);
+        }
+        return new ExpressionException(format("Syntax error, insert \"%s\" to complete the expression: %s\nOr use the escape char %s before of the %s to escape this expression.",
+                END,
+                template.subSequence(startExpressionIndex, template.length()),
+                ESCAPE, START));
     }
 
-    private boolean isEscapeChar(char c) {
-        return (c == ESCAPE);
+    ExpressionScanner getScanner() {
+        return SCANNER;
     }
 
-    private int removeNextEscapes(StringBuilder builder, int offsetBuilder, SortedSet<Integer> removableEscapeIndexes, Expression expression) {
-        if ((!removableEscapeIndexes.isEmpty()) && (removableEscapeIndexes.last() > expression.getStart())) {
-            removableEscapeIndexes = removableEscapeIndexes.tailSet(expression.getEnd());
-            for (Integer index : removableEscapeIndexes) {
-                builder.deleteCharAt(offsetBuilder + index);
-                offsetBuilder--;
-            }
-        }
-        return offsetBuilder;
+    boolean ignoreDoubleQuoteLiteral(char c) {
+        return IGNORE_DOUBLE_QUOTE_LITERAL && (c == '"') && ((c != START.charAt(0)) || (START.length() > 1));
     }
 
-    private int removePreviousEscapes(StringBuilder builder, int offsetBuilder, SortedSet<Integer> removableEscapeIndexes, Expression expression) {
-        if (!removableEscapeIndexes.isEmpty()) {
-            if (removableEscapeIndexes.last() > expression.getStart()) {
-                removableEscapeIndexes = removableEscapeIndexes.headSet(expression.getStart());
-            }
-            for (Integer index : removableEscapeIndexes) {
-                builder.deleteCharAt(offsetBuilder + index);
-                offsetBuilder--;
-            }
-        }
-        return offsetBuilder;
+    boolean ignoreSingleQuoteLiteral(char c) {
+        return IGNORE_SINGLE_QUOTE_LITERAL && (c == '\'') && ((c != START.charAt(0)) || (START.length() > 1));
     }
 
 }
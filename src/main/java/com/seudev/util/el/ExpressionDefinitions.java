@@ -8,11 +8,42 @@ import javax.cache.annotation.CacheKey;
 import javax.cache.annotation.CacheResult;
 import javax.enterprise.context.ApplicationScoped;
 
+import com.seudev.util.data.BoundedCache;
+
 /**
  * @author Thomás Sousa Silva (ThomasSousa96)
  */
 public class ExpressionDefinitions {
 
+	/**
+	 * Returns a definition that finds the expressions of all given definitions in one pass.
+	 *
+	 * @param definitions the definitions to combine
+	 * @return the composite definition
+	 */
+	public static CompositeExpressionDefinition combine(ExpressionDefinition... definitions) {
+		return new CompositeExpressionDefinition(definitions);
+	}
+
+	/**
+	 * Returns a definition of a custom syntax, scanned by the most specialized {@link ScannerShape} for its open and close arguments,
+	 * that caches the scans of the given number of templates. Unlike the predefined definitions, it needs no subclass to cache its scans.
+	 *
+	 * @param start the open argument
+	 * @param end the close argument
+	 * @param escape the escape char
+	 * @param ignoreSingleQuoteLiteral whether the text between single quotes is ignored
+	 * @param ignoreDoubleQuoteLiteral whether the text between double quotes is ignored
+	 * @param maximumCachedTemplates the maximum number of templates whose scans are cached
+	 * @return the definition
+	 * @see ExpressionDefinition#setParseCache(BoundedCache)
+	 */
+	public static ExpressionDefinition of(String start, String end, char escape, boolean ignoreSingleQuoteLiteral, boolean ignoreDoubleQuoteLiteral, int maximumCachedTemplates) {
+		ExpressionDefinition definition = new ExpressionDefinition(start, end, escape, ignoreSingleQuoteLiteral, ignoreDoubleQuoteLiteral);
+		definition.setParseCache(new BoundedCache<>(maximumCachedTemplates));
+		return definition;
+	}
+
 	public static CurlyBracket ofCurlyBracket() {
 		return CurlyBracket.INSTANCE;
 	}
@@ -1,35 +1,149 @@
 package com.seudev.util.el;
 
 import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Map;
 
+import javax.el.ELContext;
+import javax.el.ELException;
+import javax.el.ELManager;
 import javax.el.ELProcessor;
+import javax.el.StandardELContext;
+import javax.el.ValueExpression;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
+import com.seudev.util.data.BoundedCache;
+
+/**
+ * Evaluates EL expressions with an {@link ELProcessor}.
+ * <p>
+ * By default each evaluation parses its expression again. With a cache size, the parsed {@link ValueExpression}s are cached by the expression text,
+ * so each distinct expression is parsed only once. As in any parsed EL expression, the functions and the variables of the {@link ELProcessor}
+ * are resolved when the expression is parsed, so a cached expression keeps the functions and the variables that were defined when it was parsed:
+ * enable the cache only if they are defined before the evaluations start, or {@link BoundedCache#clear() clear} the cache after changing them.
+ * <p>
+ * By default all evaluations use the {@link ELContext} of the {@link ELProcessor}, that is not thread-safe.
+ * In the {@link ConcurrencyMode#THREAD_LOCAL} mode each thread evaluates with its own {@link ELContext},
+ * that shares the resolvers, the functions, the variables and the beans of the {@link ELProcessor}, so the evaluations can run concurrently.
+ * The {@link ELProcessor} must be fully configured before the concurrent evaluations start.
+ * The {@link ELContext} of each thread is kept while the thread lives, so the evaluators that are not application-scoped
+ * should call {@link #removeThreadELContext()} in each thread that evaluated, when they are no longer used.
+ * <p>
+ * With the direct compilation enabled, the simple expressions are compiled by the {@link ExpressionCompiler} when they are parsed,
+ * so they are evaluated without the interpretation of the EL implementation.
+ */
 @ApplicationScoped
 public class ExpressionEvaluator {
 
+    /**
+     * A cache size for the evaluators whose functions and variables are defined before the evaluations start.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
     @Inject
     private ELProcessor elProcessor;
 
+    private final BoundedCache<String, ValueExpression> valueExpressionCache;
+    private final ThreadLocal<ELContext> threadELContext = ThreadLocal.withInitial(this::createThreadELContext);
+    private volatile ConcurrencyMode concurrencyMode = ConcurrencyMode.SHARED;
+    private volatile boolean directCompilation;
+
     public ExpressionEvaluator() {
         //Only for CDI use
+        this(null, 0);
     }
     
     public ExpressionEvaluator(ELProcessor elProcessor) {
+        this(elProcessor, 0);
+    }
+
+    /**
+     * Constructs a new instance of ExpressionEvaluator.
+     *
+     * @param elProcessor the processor that evaluates the expressions
+     * @param cacheSize the maximum number of cached parsed expressions, or zero to disable the cache
+     */
+    public ExpressionEvaluator(ELProcessor elProcessor, int cacheSize) {
         this.elProcessor = elProcessor;
+        this.valueExpressionCache = (cacheSize > 0) ? new BoundedCache<>(cacheSize) : null;
+    }
+
+    /**
+     * Constructs a new instance of ExpressionEvaluator.
+     *
+     * @param elProcessor the processor that evaluates the expressions
+     * @param cacheSize the maximum number of cached parsed expressions, or zero to disable the cache
+     * @param concurrencyMode the way in which the {@link ELContext} is shared among the threads
+     */
+    public ExpressionEvaluator(ELProcessor elProcessor, int cacheSize, ConcurrencyMode concurrencyMode) {
+        this(elProcessor, cacheSize);
+        setConcurrencyMode(concurrencyMode);
     }
     
+    /**
+     * Evaluates the given expression.
+     *
+     * @param expression the expression without the bounds ${}
+     * @return the evaluation result
+     */
+    public Object eval(String expression) {
+        return evaluate(expression, null);
+    }
+
+    /**
+     * Evaluates the given expression, resolving its identifiers from the given variables before the beans of the {@link ELProcessor}.
+     * <p>
+     * The variables are visible only to this evaluation, and the evaluation does not change the {@link ELProcessor} nor its {@link ELContext},
+     * so, once the {@link ELProcessor} is fully configured, the evaluations with variables can run concurrently in any {@link ConcurrencyMode}.
+     * The variables are read-only, and the given map must not change during the evaluation.
+     * The bean properties are read through getters cached per class, so a custom resolver of the {@link ELProcessor} cannot override the properties of the beans with public getters.
+     * <p>
+     * The variables defined by {@link ELProcessor#setVariable(String, String)} are bound to the expression when it is parsed, so they always shadow the
+     * given variables of the same name, and, if the parsed expression is cached, they keep the value they had when the expression was parsed.
+     *
+     * @param expression the expression without the bounds ${}
+     * @param variables the variables by name
+     * @return the evaluation result
+     */
+    public Object eval(String expression, Map<String, ?> variables) {
+        return evaluate(expression, requireNonNull(variables, "variables"));
+    }
+
     public <R> R evalAs(String expression, Class<R> expectedResultClass) {
-        Object result = elProcessor.eval(expression);
-        if (expectedResultClass.isInstance(result)) {
-            return expectedResultClass.cast(result);
-        }
-        
-        throw new ExpressionEvaluationException(format("Is expected an instance of %s as the evaluation result of the \"%s\" expression.", expectedResultClass.getName(), expression));
+        return cast(expression, eval(expression), expectedResultClass);
+    }
+
+    /**
+     * Evaluates the given expression with the given variables, see {@link #eval(String, Map)}.
+     *
+     * @param <R> the result type
+     * @param expression the expression without the bounds ${}
+     * @param variables the variables by name
+     * @param expectedResultClass the result type
+     * @return the evaluation result
+     * @throws ExpressionEvaluationException if the result is not an instance of the given type
+     */
+    public <R> R evalAs(String expression, Map<String, ?> variables, Class<R> expectedResultClass) {
+        return cast(expression, eval(expression, variables), expectedResultClass);
+    }
+
+    /**
+     * Evaluates the given expression and coerces the result to the given type, following the EL type conversion rules.
+     * Unlike {@link #evalAs(String, Class)}, a result of another type is converted instead of rejected, for example a {@link Long} result may be returned as an {@link Integer}.
+     *
+     * @param <R> the result type
+     * @param expression the expression without the bounds ${}
+     * @param expectedResultClass the result type
+     * @return the coerced result
+     * @throws ExpressionEvaluationException if the result cannot be coerced to the given type
+     */
+    public <R> R evalAsCoerced(String expression, Class<R> expectedResultClass) {
+        return coerce(expression, eval(expression), expectedResultClass);
     }
 
     public BigDecimal evalAsBigDecimal(String expression) {
@@ -51,11 +165,35 @@ public class ExpressionEvaluator {
     public Double evalAsDouble(String expression) {
         return evalAs(expression, Double.class);
     }
-    
+
+    /**
+     * Evaluates the given expression and coerces the result to double, see {@link #evalAsCoerced(String, Class)}.
+     * Unlike {@link #evalAsDouble(String)}, a result of another type is converted, and a null result is converted to zero.
+     *
+     * @param expression the expression without the bounds ${}
+     * @return the coerced result
+     * @throws ExpressionEvaluationException if the result cannot be coerced to double
+     */
+    public double evalAsDoubleValue(String expression) {
+        return evalAsCoerced(expression, double.class);
+    }
+
     public Float evalAsFloat(String expression) {
         return evalAs(expression, Float.class);
     }
 
+    /**
+     * Evaluates the given expression and coerces the result to int, see {@link #evalAsCoerced(String, Class)}.
+     * Unlike {@link #evalAsInteger(String)}, a result of another type is converted, and a null result is converted to zero.
+     *
+     * @param expression the expression without the bounds ${}
+     * @return the coerced result
+     * @throws ExpressionEvaluationException if the result cannot be coerced to int
+     */
+    public int evalAsInt(String expression) {
+        return evalAsCoerced(expression, int.class);
+    }
+
     public Integer evalAsInteger(String expression) {
         return evalAs(expression, Integer.class);
     }
@@ -64,6 +202,18 @@ public class ExpressionEvaluator {
         return evalAs(expression, Long.class);
     }
 
+    /**
+     * Evaluates the given expression and coerces the result to long, see {@link #evalAsCoerced(String, Class)}.
+     * Unlike {@link #evalAsLong(String)}, a result of another type is converted, and a null result is converted to zero.
+     *
+     * @param expression the expression without the bounds ${}
+     * @return the coerced result
+     * @throws ExpressionEvaluationException if the result cannot be coerced to long
+     */
+    public long evalAsLongValue(String expression) {
+        return evalAsCoerced(expression, long.class);
+    }
+
     public Short evalAsShort(String expression) {
         return evalAs(expression, Short.class);
     }
@@ -71,5 +221,147 @@ public class ExpressionEvaluator {
     public String evalAsString(String expression) {
         return evalAs(expression, String.class);
     }
-    
+
+    public ConcurrencyMode getConcurrencyMode() {
+        return concurrencyMode;
+    }
+
+    /**
+     * Returns the cache of the parsed expressions.
+     *
+     * @return the cache, or null if the cache is disabled
+     */
+    public BoundedCache<String, ValueExpression> getValueExpressionCache() {
+        return valueExpressionCache;
+    }
+
+    public boolean isDirectCompilation() {
+        return directCompilation;
+    }
+
+    /**
+     * Parses and caches the given expressions, so their first evaluation skips the parsing.
+     *
+     * @param expressions the expressions without the bounds ${}
+     */
+    public void precompile(Collection<String> expressions) {
+        if (valueExpressionCache == null) {
+            return;
+        }
+        ELContext context = getELContext();
+        for (String expression : expressions) {
+            getValueExpression(expression, context);
+        }
+    }
+
+    /**
+     * Removes the {@link ELContext} of the current thread, created in the {@link ConcurrencyMode#THREAD_LOCAL} mode.
+     * A later evaluation of the current thread creates a new one.
+     */
+    public void removeThreadELContext() {
+        threadELContext.remove();
+    }
+
+    public void setConcurrencyMode(ConcurrencyMode concurrencyMode) {
+        this.concurrencyMode = requireNonNull(concurrencyMode, "concurrencyMode");
+    }
+
+    /**
+     * Enables or disables the direct compilation of the simple expressions, see {@link ExpressionCompiler}.
+     * It applies to the expressions parsed afterwards, so the already cached expressions keep their current form.
+     *
+     * @param directCompilation true to compile the simple expressions
+     */
+    public void setDirectCompilation(boolean directCompilation) {
+        this.directCompilation = directCompilation;
+    }
+
+    private <R> R cast(String expression, Object result, Class<R> expectedResultClass) {
+        if (expectedResultClass.isInstance(result)) {
+            return expectedResultClass.cast(result);
+        }
+        
+        throw new ExpressionEvaluationException(format("Is expected an instance of %s as the evaluation result of the \"%s\" expression.", expectedResultClass.getName(), expression));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> R coerce(String expression, Object result, Class<R> expectedResultClass) {
+        if (expectedResultClass.isInstance(result)) {
+            return (R) result;
+        }
+        try {
+            return (R) ELManager.getExpressionFactory().coerceToType(result, expectedResultClass);
+        } catch (ELException ex) {
+            throw new ExpressionEvaluationException(format("The evaluation result of the \"%s\" expression cannot be coerced to %s.", expression, expectedResultClass.getName()), ex);
+        }
+    }
+
+    private ELContext createThreadELContext() {
+        StandardELContext context = elProcessor.getELManager().getELContext();
+        synchronized (context) {
+            return new StandardELContext(context);
+        }
+    }
+
+    private ValueExpression createValueExpression(String expression, ELContext context) {
+        if (directCompilation) {
+            return ExpressionCompiler.compile(expression, context);
+        }
+        return ELManager.getExpressionFactory().createValueExpression(context, ("${" + expression + "}"), Object.class);
+    }
+
+    private Object evaluate(String expression, Map<String, ?> variables) {
+        ExpressionListener listener = ExpressionListeners.getListener();
+        if (listener == ExpressionListener.NOOP) {
+            return getValue(expression, variables);
+        }
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = getValue(expression, variables);
+        } catch (RuntimeException ex) {
+            listener.onEvaluationFailure(expression, ex, (System.nanoTime() - start));
+            throw ex;
+        }
+        listener.onEvaluation(expression, (System.nanoTime() - start));
+        return result;
+    }
+
+    private ELContext getELContext() {
+        if (concurrencyMode == ConcurrencyMode.THREAD_LOCAL) {
+            return threadELContext.get();
+        }
+        return elProcessor.getELManager().getELContext();
+    }
+
+    private Object getValue(String expression, Map<String, ?> variables) {
+        ELContext context = getELContext();
+        ValueExpression valueExpression = getValueExpression(expression, context);
+        if (variables == null) {
+            return valueExpression.getValue(context);
+        }
+        return valueExpression.getValue(new ScopedELContext(context, variables));
+    }
+
+    private ValueExpression getValueExpression(String expression, ELContext context) {
+        if (valueExpressionCache == null) {
+            return createValueExpression(expression, context);
+        }
+        return valueExpressionCache.computeIfAbsent(expression, e -> createValueExpression(e, context));
+    }
+
+    public enum ConcurrencyMode {
+
+        /**
+         * All threads evaluate with the {@link ELContext} of the {@link ELProcessor}, so the evaluations must not run concurrently.
+         */
+        SHARED,
+
+        /**
+         * Each thread evaluates with its own {@link ELContext}, created from the {@link ELContext} of the {@link ELProcessor}.
+         */
+        THREAD_LOCAL
+
+    }
+
 }
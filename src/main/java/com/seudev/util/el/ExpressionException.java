@@ -16,4 +16,8 @@ public class ExpressionException extends RuntimeException {
 		super(cause);
 	}
 
+	protected ExpressionException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+		super(message, cause, enableSuppression, writableStackTrace);
+	}
+
 }
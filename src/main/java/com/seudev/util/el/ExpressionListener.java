@@ -0,0 +1,77 @@
+package com.seudev.util.el;
+
+/**
+ * Receives the measurements of the scans, formats and evaluations of the expressions of this package.
+ * All methods do nothing by default, so an implementation overrides only the events it records.
+ * <p>
+ * The methods are called by the threads that scan and evaluate the expressions, so they must be thread-safe, fast and must not throw.
+ *
+ * @see ExpressionListeners#setListener(ExpressionListener)
+ * @see ExpressionMetrics
+ */
+public interface ExpressionListener {
+
+    /**
+     * The listener that ignores all events. While it is installed, nothing is measured.
+     */
+    ExpressionListener NOOP = new ExpressionListener() {
+    };
+
+    /**
+     * Called after an {@link ExpressionEvaluator} evaluates an expression.
+     *
+     * @param expression the expression without the bounds ${}
+     * @param nanos the duration of the evaluation, in nanoseconds
+     */
+    default void onEvaluation(String expression, long nanos) {
+    }
+
+    /**
+     * Called after an {@link ExpressionEvaluator} fails to evaluate an expression.
+     *
+     * @param expression the expression without the bounds ${}
+     * @param failure the failure
+     * @param nanos the duration of the evaluation, in nanoseconds
+     */
+    default void onEvaluationFailure(String expression, RuntimeException failure, long nanos) {
+    }
+
+    /**
+     * Called after the formatter of an interpolation returns the value of an expression.
+     *
+     * @param expression the formatted expression
+     * @param nanos the duration of the formatter call, in nanoseconds
+     */
+    default void onFormat(Expression expression, long nanos) {
+    }
+
+    /**
+     * Called after the formatter of an interpolation fails or returns null.
+     *
+     * @param expression the expression
+     * @param failure the failure
+     */
+    default void onFormatFailure(Expression expression, RuntimeException failure) {
+    }
+
+    /**
+     * Called after a template is scanned. A scan served by a parse cache is not reported.
+     *
+     * @param template the scanned template, which must not be kept since it may be a mutable buffer
+     * @param expressionCount the number of expressions found
+     * @param escapeCount the number of removable escape chars found
+     * @param nanos the duration of the scan, in nanoseconds
+     */
+    default void onScan(CharSequence template, int expressionCount, int escapeCount, long nanos) {
+    }
+
+    /**
+     * Called after the scan of a template fails, usually because an expression is not closed.
+     *
+     * @param template the template, which must not be kept since it may be a mutable buffer
+     * @param failure the failure
+     */
+    default void onScanFailure(CharSequence template, RuntimeException failure) {
+    }
+
+}
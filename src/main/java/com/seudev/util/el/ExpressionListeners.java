@@ -0,0 +1,27 @@
+package com.seudev.util.el;
+
+/**
+ * Holds the {@link ExpressionListener} of this package.
+ * The {@link ExpressionListener#NOOP} listener is installed by default, which skips all measurements, including the reading of the clock.
+ */
+public final class ExpressionListeners {
+
+    private static volatile ExpressionListener listener = ExpressionListener.NOOP;
+
+    private ExpressionListeners() {
+    }
+
+    public static ExpressionListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Installs the given listener, replacing the current one.
+     *
+     * @param listener the listener, or null to install the {@link ExpressionListener#NOOP} listener
+     */
+    public static void setListener(ExpressionListener listener) {
+        ExpressionListeners.listener = (listener == null) ? ExpressionListener.NOOP : listener;
+    }
+
+}
@@ -0,0 +1,247 @@
+package com.seudev.util.el;
+
+import static java.util.Comparator.comparingLong;
+
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * An {@link ExpressionListener} that summarizes the measurements in histograms, optionally exposed as a JMX MBean.
+ * <p>
+ * The evaluations and the formats are also summarized by expression, for up to {@value #MAXIMUM_TRACKED_EXPRESSIONS} distinct expressions each,
+ * so the slowest expressions and the slowest template can be found in production.
+ *
+ * @see #install()
+ */
+public class ExpressionMetrics implements ExpressionListener, ExpressionMetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.seudev.util.el:type=ExpressionMetrics";
+
+    public static final int MAXIMUM_TRACKED_EXPRESSIONS = 512;
+
+    private static final int SLOWEST_EVALUATIONS = 20;
+    private static final int TEMPLATE_SUMMARY_LENGTH = 100;
+
+    private final Histogram SCAN_NANOS = new Histogram();
+    private final Histogram TEMPLATE_LENGTHS = new Histogram();
+    private final Histogram FORMAT_NANOS = new Histogram();
+    private final Histogram EVALUATION_NANOS = new Histogram();
+    private final LongAdder SCANNED_EXPRESSIONS = new LongAdder();
+    private final LongAdder SCANNED_ESCAPES = new LongAdder();
+    private final LongAdder SCAN_FAILURES = new LongAdder();
+    private final LongAdder FORMAT_FAILURES = new LongAdder();
+    private final LongAdder EVALUATION_FAILURES = new LongAdder();
+    private final Map<String, Histogram> EVALUATIONS_BY_EXPRESSION = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> FORMATS_BY_EXPRESSION = new ConcurrentHashMap<>();
+
+    private volatile long slowestScanNanos = -1;
+    private String slowestScanTemplate;
+    private volatile boolean registered;
+
+    /**
+     * Creates the metrics, registers them as the {@value #OBJECT_NAME} MBean in the platform MBean server and installs them as the listener of this package.
+     *
+     * @return the installed metrics
+     * @throws IllegalStateException if the MBean cannot be registered
+     */
+    public static ExpressionMetrics install() {
+        ExpressionMetrics metrics = new ExpressionMetrics();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+        } catch (JMException ex) {
+            throw new IllegalStateException("The expression metrics cannot be registered as " + OBJECT_NAME, ex);
+        }
+        metrics.registered = true;
+        ExpressionListeners.setListener(metrics);
+        return metrics;
+    }
+
+    @Override
+    public long getEvaluationFailureCount() {
+        return EVALUATION_FAILURES.sum();
+    }
+
+    @Override
+    public HistogramSnapshot getEvaluationNanos() {
+        return EVALUATION_NANOS.snapshot();
+    }
+
+    @Override
+    public long getFormatFailureCount() {
+        return FORMAT_FAILURES.sum();
+    }
+
+    @Override
+    public HistogramSnapshot getFormatNanos() {
+        return FORMAT_NANOS.snapshot();
+    }
+
+    @Override
+    public long getScanFailureCount() {
+        return SCAN_FAILURES.sum();
+    }
+
+    @Override
+    public HistogramSnapshot getScanNanos() {
+        return SCAN_NANOS.snapshot();
+    }
+
+    @Override
+    public long getScannedEscapeCount() {
+        return SCANNED_ESCAPES.sum();
+    }
+
+    @Override
+    public long getScannedExpressionCount() {
+        return SCANNED_EXPRESSIONS.sum();
+    }
+
+    @Override
+    public Map<String, HistogramSnapshot> getSlowestEvaluations() {
+        return slowest(EVALUATIONS_BY_EXPRESSION);
+    }
+
+    @Override
+    public Map<String, HistogramSnapshot> getSlowestFormats() {
+        return slowest(FORMATS_BY_EXPRESSION);
+    }
+
+    @Override
+    public long getSlowestScanNanos() {
+        return Math.max(slowestScanNanos, 0);
+    }
+
+    @Override
+    public synchronized String getSlowestScanTemplate() {
+        return slowestScanTemplate;
+    }
+
+    @Override
+    public HistogramSnapshot getTemplateLengths() {
+        return TEMPLATE_LENGTHS.snapshot();
+    }
+
+    @Override
+    public void onEvaluation(String expression, long nanos) {
+        EVALUATION_NANOS.record(nanos);
+        record(EVALUATIONS_BY_EXPRESSION, expression, nanos);
+    }
+
+    @Override
+    public void onEvaluationFailure(String expression, RuntimeException failure, long nanos) {
+        EVALUATION_FAILURES.increment();
+    }
+
+    @Override
+    public void onFormat(Expression expression, long nanos) {
+        FORMAT_NANOS.record(nanos);
+        record(FORMATS_BY_EXPRESSION, expression.getExpression(), nanos);
+    }
+
+    @Override
+    public void onFormatFailure(Expression expression, RuntimeException failure) {
+        FORMAT_FAILURES.increment();
+    }
+
+    @Override
+    public void onScan(CharSequence template, int expressionCount, int escapeCount, long nanos) {
+        SCAN_NANOS.record(nanos);
+        TEMPLATE_LENGTHS.record(template.length());
+        SCANNED_EXPRESSIONS.add(expressionCount);
+        SCANNED_ESCAPES.add(escapeCount);
+        if (nanos > slowestScanNanos) {
+            synchronized (this) {
+                if (nanos > slowestScanNanos) {
+                    slowestScanNanos = nanos;
+                    slowestScanTemplate = template.subSequence(0, Math.min(template.length(), TEMPLATE_SUMMARY_LENGTH)).toString();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onScanFailure(CharSequence template, RuntimeException failure) {
+        SCAN_FAILURES.increment();
+    }
+
+    @Override
+    public synchronized void reset() {
+        SCAN_NANOS.reset();
+        TEMPLATE_LENGTHS.reset();
+        FORMAT_NANOS.reset();
+        EVALUATION_NANOS.reset();
+        SCANNED_EXPRESSIONS.reset();
+        SCANNED_ESCAPES.reset();
+        SCAN_FAILURES.reset();
+        FORMAT_FAILURES.reset();
+        EVALUATION_FAILURES.reset();
+        EVALUATIONS_BY_EXPRESSION.clear();
+        FORMATS_BY_EXPRESSION.clear();
+        slowestScanNanos = -1;
+        slowestScanTemplate = null;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+                .append("ExpressionMetrics [SCAN_NANOS=").append(getScanNanos())
+                .append(", FORMAT_NANOS=").append(getFormatNanos())
+                .append(", EVALUATION_NANOS=").append(getEvaluationNanos())
+                .append("]").toString();
+    }
+
+    /**
+     * Unregisters the MBean of these metrics and, if these metrics are the installed listener, installs the {@link ExpressionListener#NOOP} listener.
+     */
+    public void uninstall() {
+        if (ExpressionListeners.getListener() == this) {
+            ExpressionListeners.setListener(null);
+        }
+        if (!registered) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+            registered = false;
+        } catch (InstanceNotFoundException ex) {
+            registered = false;
+        } catch (JMException ex) {
+            throw new IllegalStateException("The expression metrics cannot be unregistered from " + OBJECT_NAME, ex);
+        }
+    }
+
+    private static void record(Map<String, Histogram> histograms, String expression, long nanos) {
+        Histogram histogram = histograms.get(expression);
+        if ((histogram == null) && (histograms.size() < MAXIMUM_TRACKED_EXPRESSIONS)) {
+            histogram = histograms.computeIfAbsent(expression, e -> new Histogram());
+        }
+        if (histogram != null) {
+            histogram.record(nanos);
+        }
+    }
+
+    private static Map<String, HistogramSnapshot> slowest(Map<String, Histogram> histograms) {
+        List<Map.Entry<String, HistogramSnapshot>> snapshots = new ArrayList<>();
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            snapshots.add(new SimpleImmutableEntry<>(entry.getKey(), entry.getValue().snapshot()));
+        }
+        snapshots.sort(comparingLong((Map.Entry<String, HistogramSnapshot> entry) -> entry.getValue().getMax()).reversed());
+
+        Map<String, HistogramSnapshot> slowest = new LinkedHashMap<>();
+        for (Map.Entry<String, HistogramSnapshot> entry : snapshots.subList(0, Math.min(snapshots.size(), SLOWEST_EVALUATIONS))) {
+            slowest.put(entry.getKey(), entry.getValue());
+        }
+        return slowest;
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.seudev.util.el;
+
+import java.util.Map;
+
+/**
+ * The JMX view of {@link ExpressionMetrics}. The durations are in nanoseconds.
+ */
+public interface ExpressionMetricsMXBean {
+
+    HistogramSnapshot getEvaluationNanos();
+
+    long getEvaluationFailureCount();
+
+    HistogramSnapshot getFormatNanos();
+
+    long getFormatFailureCount();
+
+    long getScanFailureCount();
+
+    HistogramSnapshot getScanNanos();
+
+    long getScannedEscapeCount();
+
+    long getScannedExpressionCount();
+
+    /**
+     * Returns the statistics of the evaluated expressions with the greatest maximum duration.
+     *
+     * @return the statistics by expression
+     */
+    Map<String, HistogramSnapshot> getSlowestEvaluations();
+
+    /**
+     * Returns the statistics of the formatted expressions with the greatest maximum duration, by expression including its bounds.
+     *
+     * @return the statistics by expression
+     */
+    Map<String, HistogramSnapshot> getSlowestFormats();
+
+    long getSlowestScanNanos();
+
+    /**
+     * Returns the beginning of the template whose scan was the slowest.
+     *
+     * @return the beginning of the template, or null if no template was scanned
+     */
+    String getSlowestScanTemplate();
+
+    HistogramSnapshot getTemplateLengths();
+
+    void reset();
+
+}
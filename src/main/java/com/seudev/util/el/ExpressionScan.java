@@ -0,0 +1,115 @@
+package com.seudev.util.el;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableList;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+/**
+ * The result of scanning a template with an {@link ExpressionDefinition}: the expressions, in the order in which they appear, and the removable escape indexes.
+ * <p>
+ * The escape indexes are kept in a sorted {@code int[]}, so a scan allocates neither boxed integers nor tree nodes.
+ * The escapes that precede the expression {@code i} (and, for the last expression, also the escapes that follow it) are associated to this expression,
+ * as in the {@link SortedMap} view returned by {@link #asSortedMap()}.
+ *
+ * @see ExpressionDefinition#scan(String)
+ */
+public final class ExpressionScan implements Serializable {
+
+    private static final long serialVersionUID = 4400311604359434716L;
+
+    static final ExpressionScan EMPTY = new ExpressionScan(new Expression[0], new int[0], new int[]{0});
+
+    final Expression[] EXPRESSIONS;
+    final int[] ESCAPES;
+    final int[] ESCAPES_BOUNDS;
+
+    /**
+     * @param expressions the expressions, sorted by the start index
+     * @param escapes the sorted removable escape indexes
+     * @param escapesBounds the index in {@code escapes} of the first escape of each expression, followed by {@code escapes.length}
+     */
+    ExpressionScan(Expression[] expressions, int[] escapes, int[] escapesBounds) {
+        EXPRESSIONS = expressions;
+        ESCAPES = escapes;
+        ESCAPES_BOUNDS = escapesBounds;
+    }
+
+    static ExpressionScan of(SortedMap<Expression, SortedSet<Integer>> expressions) {
+        if (expressions instanceof ExpressionScanMap) {
+            ExpressionScan scan = ((ExpressionScanMap) expressions).getScan();
+            if (scan != null) {
+                return scan;
+            }
+        }
+        if (expressions.isEmpty()) {
+            return EMPTY;
+        }
+        Expression[] array = new Expression[expressions.size()];
+        int[] escapesBounds = new int[array.length + 1];
+        IntList escapes = new IntList();
+        int i = 0;
+        for (Entry<Expression, SortedSet<Integer>> entry : expressions.entrySet()) {
+            array[i] = entry.getKey();
+            escapesBounds[i++] = escapes.size();
+            for (int escapeIndex : entry.getValue()) {
+                escapes.add(escapeIndex);
+            }
+        }
+        escapesBounds[i] = escapes.size();
+        return new ExpressionScan(array, escapes.toArray(), escapesBounds);
+    }
+
+    /**
+     * Returns a view of this scan in the format returned by {@link ExpressionDefinition#findAll(String)}.
+     * The view is created without copying the expressions or boxing the escape indexes, the {@link Integer}s are created only when iterated.
+     *
+     * @return an unmodifiable sorted map
+     */
+    public SortedMap<Expression, SortedSet<Integer>> asSortedMap() {
+        return new ExpressionScanMap(this, 0, EXPRESSIONS.length);
+    }
+
+    public int getEscapeCount() {
+        return ESCAPES.length;
+    }
+
+    /**
+     * Returns all removable escape indexes of the template.
+     *
+     * @return a sorted copy of the escape indexes
+     */
+    public int[] getEscapeIndexes() {
+        return ESCAPES.clone();
+    }
+
+    public Expression getExpression(int index) {
+        return EXPRESSIONS[index];
+    }
+
+    public List<Expression> getExpressions() {
+        return unmodifiableList(asList(EXPRESSIONS));
+    }
+
+    public boolean isEmpty() {
+        return (EXPRESSIONS.length == 0);
+    }
+
+    public int size() {
+        return EXPRESSIONS.length;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+                .append("ExpressionScan [EXPRESSIONS=").append(EXPRESSIONS.length)
+                .append(", ESCAPES=").append(Arrays.toString(ESCAPES))
+                .append("]").toString();
+    }
+
+}
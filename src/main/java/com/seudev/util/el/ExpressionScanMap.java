@@ -0,0 +1,154 @@
+package com.seudev.util.el;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+/**
+ * An unmodifiable {@link SortedMap} view of a range of the expressions of an {@link ExpressionScan}.
+ */
+final class ExpressionScanMap extends AbstractMap<Expression, SortedSet<Integer>> implements SortedMap<Expression, SortedSet<Integer>>, Serializable {
+
+    private static final long serialVersionUID = -7060117580620213547L;
+
+    private final ExpressionScan SCAN;
+    private final int FROM;
+    private final int TO;
+
+    ExpressionScanMap(ExpressionScan scan, int from, int to) {
+        SCAN = scan;
+        FROM = from;
+        TO = to;
+    }
+
+    @Override
+    public Comparator<? super Expression> comparator() {
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return (indexOf(key) >= 0);
+    }
+
+    @Override
+    public Set<Entry<Expression, SortedSet<Integer>>> entrySet() {
+        return new AbstractSet<Entry<Expression, SortedSet<Integer>>>() {
+
+            @Override
+            public Iterator<Entry<Expression, SortedSet<Integer>>> iterator() {
+                return new Iterator<Entry<Expression, SortedSet<Integer>>>() {
+
+                    private int index = FROM;
+
+                    @Override
+                    public boolean hasNext() {
+                        return (index < TO);
+                    }
+
+                    @Override
+                    public Entry<Expression, SortedSet<Integer>> next() {
+                        if (index >= TO) {
+                            throw new NoSuchElementException();
+                        }
+                        int i = index++;
+                        return new SimpleImmutableEntry<>(SCAN.EXPRESSIONS[i], getEscapeIndexes(i));
+                    }
+
+                };
+            }
+
+            @Override
+            public int size() {
+                return (TO - FROM);
+            }
+
+        };
+    }
+
+    @Override
+    public Expression firstKey() {
+        if (FROM == TO) {
+            throw new NoSuchElementException();
+        }
+        return SCAN.EXPRESSIONS[FROM];
+    }
+
+    @Override
+    public SortedSet<Integer> get(Object key) {
+        int index = indexOf(key);
+        return (index < 0) ? null : getEscapeIndexes(index);
+    }
+
+    @Override
+    public SortedMap<Expression, SortedSet<Integer>> headMap(Expression toKey) {
+        return new ExpressionScanMap(SCAN, FROM, lowerBound(toKey));
+    }
+
+    @Override
+    public Expression lastKey() {
+        if (FROM == TO) {
+            throw new NoSuchElementException();
+        }
+        return SCAN.EXPRESSIONS[TO - 1];
+    }
+
+    @Override
+    public int size() {
+        return (TO - FROM);
+    }
+
+    @Override
+    public SortedMap<Expression, SortedSet<Integer>> subMap(Expression fromKey, Expression toKey) {
+        if (fromKey.compareTo(toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        return new ExpressionScanMap(SCAN, lowerBound(fromKey), lowerBound(toKey));
+    }
+
+    @Override
+    public SortedMap<Expression, SortedSet<Integer>> tailMap(Expression fromKey) {
+        return new ExpressionScanMap(SCAN, lowerBound(fromKey), TO);
+    }
+
+    /**
+     * Returns the scan of this view.
+     *
+     * @return the scan, or null if this view contains only a part of the scan
+     */
+    ExpressionScan getScan() {
+        return ((FROM == 0) && (TO == SCAN.EXPRESSIONS.length)) ? SCAN : null;
+    }
+
+    private SortedSet<Integer> getEscapeIndexes(int index) {
+        return new IntArraySortedSet(SCAN.ESCAPES, SCAN.ESCAPES_BOUNDS[index], SCAN.ESCAPES_BOUNDS[index + 1]);
+    }
+
+    private int indexOf(Object key) {
+        if (!(key instanceof Expression)) {
+            return -1;
+        }
+        int index = lowerBound((Expression) key);
+        return ((index < TO) && SCAN.EXPRESSIONS[index].equals(key)) ? index : -1;
+    }
+
+    private int lowerBound(Expression key) {
+        int low = FROM, high = TO;
+        while (low < high) {
+            int middle = ((low + high) >>> 1);
+            if (SCAN.EXPRESSIONS[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+}
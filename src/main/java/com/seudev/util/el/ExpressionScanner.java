@@ -0,0 +1,431 @@
+package com.seudev.util.el;
+
+import static com.seudev.util.el.ExpressionDefinitions.ofDoubleQuoteLiteral;
+import static com.seudev.util.el.ExpressionDefinitions.ofSingleQuoteLiteral;
+
+import java.io.Serializable;
+
+/**
+ * Scans the templates of an {@link ExpressionDefinition}.
+ * <p>
+ * The chars that may change the state of the scan (the first chars of START and END, the escape char and the ignored quotes) are kept in a lookup table
+ * built once, so the plain text between them is skipped with a single table lookup per char, and START and END are compared only when their first char is found.
+ * This class compares START and END of any length, the nested subclasses are specialized for the common {@link ScannerShape shapes}.
+ */
+class ExpressionScanner implements Serializable {
+
+    private static final long serialVersionUID = 2286305612960286862L;
+
+    /** The result of a search that found neither the index nor an unclosed quote literal. */
+    static final int NOT_FOUND = -1;
+
+    private final String START;
+    private final String END;
+    final char START_CHAR;
+    final char END_CHAR;
+    final char ESCAPE;
+    final boolean SKIP_SINGLE_QUOTE_LITERAL;
+    final boolean SKIP_DOUBLE_QUOTE_LITERAL;
+    private final long TRIGGERS_LOW;
+    private final long TRIGGERS_HIGH;
+
+    ExpressionScanner(String start, String end, char escape, boolean ignoreSingleQuoteLiteral, boolean ignoreDoubleQuoteLiteral) {
+        START = start;
+        END = end;
+        START_CHAR = start.charAt(0);
+        END_CHAR = end.charAt(0);
+        ESCAPE = escape;
+        SKIP_SINGLE_QUOTE_LITERAL = ignoreSingleQuoteLiteral && ((START_CHAR != '\'') || (start.length() > 1));
+        SKIP_DOUBLE_QUOTE_LITERAL = ignoreDoubleQuoteLiteral && ((START_CHAR != '"') || (start.length() > 1));
+
+        long low = 0, high = 0;
+        for (char c : new char[]{START_CHAR, END_CHAR, ESCAPE, (SKIP_SINGLE_QUOTE_LITERAL ? '\'' : START_CHAR), (SKIP_DOUBLE_QUOTE_LITERAL ? '"' : START_CHAR)}) {
+            if (c < 64) {
+                low |= (1L << c);
+            } else if (c < 128) {
+                high |= (1L << (c - 64));
+            }
+        }
+        TRIGGERS_LOW = low;
+        TRIGGERS_HIGH = high;
+    }
+
+    int getExpressionEndIndex(CharSequence template, int startExpressionIndex) {
+        return getExpressionEndIndex(template, startExpressionIndex, ScanLimits.NONE);
+    }
+
+    /**
+     * Returns the index of the END that closes the expression that starts in the given index.
+     *
+     * @param template the text that contains the expression
+     * @param startExpressionIndex the index that starts the expression
+     * @param limits the limits of the scan
+     * @return the index, {@link #NOT_FOUND} if the expression is not closed, or the {@link #unclosedQuoteLiteral(int) code} of an unclosed quote literal
+     * @throws ScanLimitException if a limit is exceeded
+     */
+    int getExpressionEndIndex(CharSequence template, int startExpressionIndex, ScanLimits limits) {
+        int openeds = 0;
+        int length = template.length();
+        int regionEnd = ScanLimits.regionEnd(length, startExpressionIndex, (limits.getMaximumExpressionLength() - END.length() + 1));
+        for (int i = (startExpressionIndex + START.length()); i < regionEnd; i++) {
+            char c = template.charAt(i);
+            if (!isTrigger(c)) {
+                continue;
+            }
+
+            if (c == ESCAPE) {
+                i++;
+                continue;
+            }
+            if (isSkippedQuote(c)) {
+                i = skipQuoteLiteral(template, i, limits);
+                if (i < 0) {
+                    return i;
+                }
+                continue;
+            }
+            if ((c == END_CHAR) && startsWith(template, END, i)) {
+                if (openeds == 0) {
+                    return i;
+                }
+                openeds--;
+            } else if ((c == START_CHAR) && startsWith(template, START, i)) {
+                if (++openeds >= limits.getMaximumNestingDepth()) {
+                    throw new ScanLimitException(ScanLimits.Limit.NESTING_DEPTH, i);
+                }
+            }
+        }
+        if (regionEnd < length) {
+            throw new ScanLimitException(ScanLimits.Limit.EXPRESSION_LENGTH, startExpressionIndex);
+        }
+        return NOT_FOUND;
+    }
+
+    int indexOf(CharSequence template, int offset, IntList escapes) {
+        return indexOf(template, offset, escapes, ScanLimits.NONE);
+    }
+
+    /**
+     * Returns the index of the next START, skipping the escaped chars and the ignored quote literals.
+     *
+     * @param template the text that contains the expressions
+     * @param offset the index from which the START is searched
+     * @param escapes the list where the indexes of the escape chars found before the START are added, or null
+     * @param limits the limits of the scan
+     * @return the index, {@link #NOT_FOUND} if there is no START, or the {@link #unclosedQuoteLiteral(int) code} of an unclosed quote literal
+     * @throws ScanLimitException if a limit is exceeded
+     */
+    int indexOf(CharSequence template, int offset, IntList escapes, ScanLimits limits) {
+        int length = template.length();
+        for (int i = offset; i < length; i++) {
+            char c = template.charAt(i);
+            if (!isTrigger(c)) {
+                continue;
+            }
+
+            if (c == ESCAPE) {
+                if (escapes != null) {
+                    escapes.add(i);
+                }
+                i++;
+                continue;
+            }
+            if (isSkippedQuote(c)) {
+                i = skipQuoteLiteral(template, i, limits);
+                if (i < 0) {
+                    return i;
+                }
+                continue;
+            }
+            if ((c == START_CHAR) && startsWith(template, START, i)) {
+                return i;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Returns the index of the next START or of the next quote of an ignored quote literal, skipping the escaped chars but not the quote literals,
+     * so the text is read only once after an unclosed quote literal, that was already read up to the end of the template.
+     *
+     * @param template the text that contains the expressions
+     * @param offset the index from which the START or the quote is searched
+     * @return the index, or {@link #NOT_FOUND} if there is no START nor quote
+     */
+    final int indexOfStartOrQuote(CharSequence template, int offset) {
+        int length = template.length();
+        for (int i = offset; i < length; i++) {
+            char c = template.charAt(i);
+            if (!isTrigger(c)) {
+                continue;
+            }
+
+            if (c == ESCAPE) {
+                i++;
+            } else if (isSkippedQuote(c) || ((c == START_CHAR) && startsWith(template, START, i))) {
+                return i;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Returns the negative code, less than {@link #NOT_FOUND}, that the searches return when the quote literal that starts in the given index is not closed.
+     *
+     * @param quoteIndex the index of the quote that starts the literal
+     * @return the code
+     */
+    static int unclosedQuoteLiteral(int quoteIndex) {
+        return (-2 - quoteIndex);
+    }
+
+    /**
+     * Returns the index of the quote that starts the unclosed quote literal of the given code.
+     *
+     * @param code the code returned by {@link #unclosedQuoteLiteral(int)}
+     * @return the index of the quote
+     */
+    static int getUnclosedQuoteLiteralIndex(int code) {
+        return (-2 - code);
+    }
+
+    /**
+     * Returns the index of the quote that closes the quote literal that starts in the given index.
+     * A quote literal ignores the quote literals of the other quote nested in it, which are tracked by a depth counter instead of recursion,
+     * so any nesting depth is scanned in constant stack space.
+     */
+    static int skipQuoteLiteral(CharSequence template, int quoteIndex, ScanLimits limits) {
+        char quote = template.charAt(quoteIndex);
+        char escape = getQuoteLiteral(quote).getEscape();
+        int depth = 1;
+        int length = template.length();
+        int regionEnd = ScanLimits.regionEnd(length, quoteIndex, limits.getMaximumQuoteLiteralLength());
+        for (int i = (quoteIndex + 1); i < regionEnd; i++) {
+            char c = template.charAt(i);
+            if (c == escape) {
+                i++;
+            } else if (c == quote) {
+                if (--depth == 0) {
+                    return i;
+                }
+                quote = getOtherQuote(quote);
+                escape = getQuoteLiteral(quote).getEscape();
+            } else if (c == getOtherQuote(quote)) {
+                if (++depth > limits.getMaximumNestingDepth()) {
+                    throw new ScanLimitException(ScanLimits.Limit.NESTING_DEPTH, i);
+                }
+                quote = c;
+                escape = getQuoteLiteral(quote).getEscape();
+            }
+        }
+        if (regionEnd < length) {
+            throw new ScanLimitException(ScanLimits.Limit.QUOTE_LITERAL_LENGTH, quoteIndex);
+        }
+        return unclosedQuoteLiteral(getInnermostUnclosedQuoteLiteral(template, quoteIndex));
+    }
+
+    /**
+     * Returns the index of the innermost quote literal that is still open at the end of the template, which is the one reported as not closed.
+     */
+    private static int getInnermostUnclosedQuoteLiteral(CharSequence template, int quoteIndex) {
+        IntList opens = new IntList();
+        opens.add(quoteIndex);
+        char quote = template.charAt(quoteIndex);
+        for (int i = (quoteIndex + 1); i < template.length(); i++) {
+            char c = template.charAt(i);
+            if (c == getQuoteLiteral(quote).getEscape()) {
+                i++;
+            } else if (c == quote) {
+                opens.removeLast();
+                quote = getOtherQuote(quote);
+            } else if (c == getOtherQuote(quote)) {
+                opens.add(i);
+                quote = c;
+            }
+        }
+        return opens.get(opens.size() - 1);
+    }
+
+    private static char getOtherQuote(char quote) {
+        return (quote == '\'') ? '"' : '\'';
+    }
+
+    private static ExpressionDefinition getQuoteLiteral(char quote) {
+        return (quote == '\'') ? ofSingleQuoteLiteral() : ofDoubleQuoteLiteral();
+    }
+
+    final boolean isSkippedQuote(char c) {
+        return (SKIP_SINGLE_QUOTE_LITERAL && (c == '\'')) || (SKIP_DOUBLE_QUOTE_LITERAL && (c == '"'));
+    }
+
+    final boolean isTrigger(char c) {
+        if (c < 64) {
+            return ((TRIGGERS_LOW & (1L << c)) != 0);
+        }
+        if (c < 128) {
+            return ((TRIGGERS_HIGH & (1L << (c - 64))) != 0);
+        }
+        return ((c == START_CHAR) || (c == END_CHAR) || (c == ESCAPE));
+    }
+
+    private boolean startsWith(CharSequence template, String token, int index) {
+        if ((index + token.length()) > template.length()) {
+            return false;
+        }
+        for (int i = 1; i < token.length(); i++) {
+            if (template.charAt(index + i) != token.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Scans the templates of a definition whose START and END have a single char, so both are found by comparing that char.
+     */
+    static final class SingleCharScanner extends ExpressionScanner {
+
+        private static final long serialVersionUID = -5407386373938281417L;
+
+        SingleCharScanner(String start, String end, char escape, boolean ignoreSingleQuoteLiteral, boolean ignoreDoubleQuoteLiteral) {
+            super(start, end, escape, ignoreSingleQuoteLiteral, ignoreDoubleQuoteLiteral);
+        }
+
+        @Override
+        int getExpressionEndIndex(CharSequence template, int startExpressionIndex, ScanLimits limits) {
+            int openeds = 0;
+            int length = template.length();
+            int regionEnd = ScanLimits.regionEnd(length, startExpressionIndex, limits.getMaximumExpressionLength());
+            for (int i = (startExpressionIndex + 1); i < regionEnd; i++) {
+                char c = template.charAt(i);
+                if (!isTrigger(c)) {
+                    continue;
+                }
+
+                if (c == ESCAPE) {
+                    i++;
+                } else if (isSkippedQuote(c)) {
+                    i = skipQuoteLiteral(template, i, limits);
+                    if (i < 0) {
+                        return i;
+                    }
+                } else if (c == END_CHAR) {
+                    if (openeds == 0) {
+                        return i;
+                    }
+                    openeds--;
+                } else if ((c == START_CHAR) && (++openeds >= limits.getMaximumNestingDepth())) {
+                    throw new ScanLimitException(ScanLimits.Limit.NESTING_DEPTH, i);
+                }
+            }
+            if (regionEnd < length) {
+                throw new ScanLimitException(ScanLimits.Limit.EXPRESSION_LENGTH, startExpressionIndex);
+            }
+            return NOT_FOUND;
+        }
+
+        @Override
+        int indexOf(CharSequence template, int offset, IntList escapes, ScanLimits limits) {
+            int length = template.length();
+            for (int i = offset; i < length; i++) {
+                char c = template.charAt(i);
+                if (!isTrigger(c)) {
+                    continue;
+                }
+
+                if (c == ESCAPE) {
+                    if (escapes != null) {
+                        escapes.add(i);
+                    }
+                    i++;
+                } else if (isSkippedQuote(c)) {
+                    i = skipQuoteLiteral(template, i, limits);
+                    if (i < 0) {
+                        return i;
+                    }
+                } else if (c == START_CHAR) {
+                    return i;
+                }
+            }
+            return NOT_FOUND;
+        }
+
+    }
+
+    /**
+     * Scans the templates of a definition whose START has two chars and whose END has a single char, like <code>${</code> and <code>}</code>.
+     */
+    static final class TwoCharStartScanner extends ExpressionScanner {
+
+        private static final long serialVersionUID = 8523181466440381162L;
+
+        private final char START_SECOND_CHAR;
+
+        TwoCharStartScanner(String start, String end, char escape, boolean ignoreSingleQuoteLiteral, boolean ignoreDoubleQuoteLiteral) {
+            super(start, end, escape, ignoreSingleQuoteLiteral, ignoreDoubleQuoteLiteral);
+            START_SECOND_CHAR = start.charAt(1);
+        }
+
+        @Override
+        int getExpressionEndIndex(CharSequence template, int startExpressionIndex, ScanLimits limits) {
+            int openeds = 0;
+            int length = template.length();
+            int regionEnd = ScanLimits.regionEnd(length, startExpressionIndex, limits.getMaximumExpressionLength());
+            for (int i = (startExpressionIndex + 2); i < regionEnd; i++) {
+                char c = template.charAt(i);
+                if (!isTrigger(c)) {
+                    continue;
+                }
+
+                if (c == ESCAPE) {
+                    i++;
+                } else if (isSkippedQuote(c)) {
+                    i = skipQuoteLiteral(template, i, limits);
+                    if (i < 0) {
+                        return i;
+                    }
+                } else if (c == END_CHAR) {
+                    if (openeds == 0) {
+                        return i;
+                    }
+                    openeds--;
+                } else if ((c == START_CHAR) && ((i + 1) < length) && (template.charAt(i + 1) == START_SECOND_CHAR)
+                        && (++openeds >= limits.getMaximumNestingDepth())) {
+                    throw new ScanLimitException(ScanLimits.Limit.NESTING_DEPTH, i);
+                }
+            }
+            if (regionEnd < length) {
+                throw new ScanLimitException(ScanLimits.Limit.EXPRESSION_LENGTH, startExpressionIndex);
+            }
+            return NOT_FOUND;
+        }
+
+        @Override
+        int indexOf(CharSequence template, int offset, IntList escapes, ScanLimits limits) {
+            int length = template.length();
+            for (int i = offset; i < length; i++) {
+                char c = template.charAt(i);
+                if (!isTrigger(c)) {
+                    continue;
+                }
+
+                if (c == ESCAPE) {
+                    if (escapes != null) {
+                        escapes.add(i);
+                    }
+                    i++;
+                } else if (isSkippedQuote(c)) {
+                    i = skipQuoteLiteral(template, i, limits);
+                    if (i < 0) {
+                        return i;
+                    }
+                } else if ((c == START_CHAR) && ((i + 1) < length) && (template.charAt(i + 1) == START_SECOND_CHAR)) {
+                    return i;
+                }
+            }
+            return NOT_FOUND;
+        }
+
+    }
+
+}
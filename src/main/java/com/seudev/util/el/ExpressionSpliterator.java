@@ -0,0 +1,47 @@
+package com.seudev.util.el;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.Spliterators.AbstractSpliterator;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator} that finds the expressions of a template one at a time, scanning the template only as far as the expressions are consumed.
+ *
+ * @see ExpressionDefinition#expressions(CharSequence)
+ */
+final class ExpressionSpliterator extends AbstractSpliterator<Expression> {
+
+    private final ExpressionDefinition DEFINITION;
+    private final CharSequence TEMPLATE;
+    private int position;
+
+    ExpressionSpliterator(ExpressionDefinition definition, CharSequence template, int offset) {
+        super(Long.MAX_VALUE, (ORDERED | SORTED | DISTINCT | NONNULL));
+        DEFINITION = definition;
+        TEMPLATE = template;
+        position = offset;
+    }
+
+    @Override
+    public Comparator<? super Expression> getComparator() {
+        return null;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Expression> action) {
+        if (position < 0) {
+            return false;
+        }
+        int startExpressionIndex = DEFINITION.indexOf(TEMPLATE, position);
+        if (startExpressionIndex < 0) {
+            position = -1;
+            return false;
+        }
+        Expression expression = DEFINITION.getExpression(TEMPLATE, startExpressionIndex);
+        position = expression.getEnd();
+        action.accept(expression);
+        return true;
+    }
+
+}
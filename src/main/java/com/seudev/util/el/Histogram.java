@@ -0,0 +1,71 @@
+package com.seudev.util.el;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of non-negative values, with a bucket for each power of two.
+ * The percentiles are approximated by the upper bound of their bucket, so they are at most twice the exact value.
+ */
+final class Histogram {
+
+    /** The bucket {@code i} holds the values with {@code i} significant bits, the bucket 0 holds only the zero. */
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray COUNTS = new AtomicLongArray(BUCKETS);
+    private final LongAdder SUM = new LongAdder();
+    private final AtomicLong MIN = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong MAX = new AtomicLong();
+
+    void record(long value) {
+        value = Math.max(value, 0);
+        COUNTS.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+        SUM.add(value);
+        long min, max;
+        while ((value < (min = MIN.get())) && !MIN.compareAndSet(min, value)) {
+            // Another thread changed the minimum, so it is compared again.
+        }
+        while ((value > (max = MAX.get())) && !MAX.compareAndSet(max, value)) {
+            // Another thread changed the maximum, so it is compared again.
+        }
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            COUNTS.set(i, 0);
+        }
+        SUM.reset();
+        MIN.set(Long.MAX_VALUE);
+        MAX.set(0);
+    }
+
+    HistogramSnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = COUNTS.get(i);
+            count += counts[i];
+        }
+        if (count == 0) {
+            return new HistogramSnapshot(0, 0, 0, 0, 0, 0, 0, 0);
+        }
+        long max = MAX.get();
+        return new HistogramSnapshot(count, SUM.sum(), MIN.get(), max,
+                percentile(counts, count, 0.50, max), percentile(counts, count, 0.90, max), percentile(counts, count, 0.99, max), percentile(counts, count, 0.999, max));
+    }
+
+    private static long percentile(long[] counts, long count, double quantile, long max) {
+        long rank = (long) Math.ceil(count * quantile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                long upperBound = (i == (BUCKETS - 1)) ? Long.MAX_VALUE : ((1L << i) - 1);
+                return Math.min(upperBound, max);
+            }
+        }
+        return max;
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.seudev.util.el;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The summary of a histogram of {@link ExpressionMetrics} at the moment it was read.
+ * The percentiles are approximated by the upper bound of the power of two bucket that holds them, and never exceed the maximum.
+ */
+public final class HistogramSnapshot {
+
+    private final long COUNT;
+    private final long SUM;
+    private final long MIN;
+    private final long MAX;
+    private final long P50;
+    private final long P90;
+    private final long P99;
+    private final long P999;
+
+    @ConstructorProperties({"count", "sum", "min", "max", "p50", "p90", "p99", "p999"})
+    public HistogramSnapshot(long count, long sum, long min, long max, long p50, long p90, long p99, long p999) {
+        COUNT = count;
+        SUM = sum;
+        MIN = min;
+        MAX = max;
+        P50 = p50;
+        P90 = p90;
+        P99 = p99;
+        P999 = p999;
+    }
+
+    public long getCount() {
+        return COUNT;
+    }
+
+    public long getMax() {
+        return MAX;
+    }
+
+    public double getMean() {
+        return (COUNT == 0) ? 0 : ((double) SUM / COUNT);
+    }
+
+    public long getMin() {
+        return MIN;
+    }
+
+    public long getP50() {
+        return P50;
+    }
+
+    public long getP90() {
+        return P90;
+    }
+
+    public long getP99() {
+        return P99;
+    }
+
+    public long getP999() {
+        return P999;
+    }
+
+    public long getSum() {
+        return SUM;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+                .append("HistogramSnapshot [COUNT=").append(COUNT)
+                .append(", MIN=").append(MIN)
+                .append(", MAX=").append(MAX)
+                .append(", MEAN=").append(getMean())
+                .append(", P50=").append(P50)
+                .append(", P90=").append(P90)
+                .append(", P99=").append(P99)
+                .append(", P999=").append(P999)
+                .append("]").toString();
+    }
+
+}
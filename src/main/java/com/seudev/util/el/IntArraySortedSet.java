@@ -0,0 +1,121 @@
+package com.seudev.util.el;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * An unmodifiable {@link SortedSet} view of a range of a sorted {@code int[]}.
+ * The {@link Integer}s are created only when the elements are read.
+ */
+final class IntArraySortedSet extends AbstractSet<Integer> implements SortedSet<Integer>, Serializable {
+
+    private static final long serialVersionUID = 2893164436567339001L;
+
+    private final int[] VALUES;
+    private final int FROM;
+    private final int TO;
+
+    IntArraySortedSet(int[] values, int from, int to) {
+        VALUES = values;
+        FROM = from;
+        TO = to;
+    }
+
+    @Override
+    public Comparator<? super Integer> comparator() {
+        return null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof Integer)) {
+            return false;
+        }
+        int index = lowerBound((Integer) o);
+        return ((index < TO) && (VALUES[index] == (Integer) o));
+    }
+
+    @Override
+    public Integer first() {
+        if (FROM == TO) {
+            throw new NoSuchElementException();
+        }
+        return VALUES[FROM];
+    }
+
+    @Override
+    public SortedSet<Integer> headSet(Integer toElement) {
+        return new IntArraySortedSet(VALUES, FROM, lowerBound(toElement));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (FROM == TO);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<Integer>() {
+
+            private int index = FROM;
+
+            @Override
+            public boolean hasNext() {
+                return (index < TO);
+            }
+
+            @Override
+            public Integer next() {
+                if (index >= TO) {
+                    throw new NoSuchElementException();
+                }
+                return VALUES[index++];
+            }
+
+        };
+    }
+
+    @Override
+    public Integer last() {
+        if (FROM == TO) {
+            throw new NoSuchElementException();
+        }
+        return VALUES[TO - 1];
+    }
+
+    @Override
+    public int size() {
+        return (TO - FROM);
+    }
+
+    @Override
+    public SortedSet<Integer> subSet(Integer fromElement, Integer toElement) {
+        if (fromElement > toElement) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        return new IntArraySortedSet(VALUES, lowerBound(fromElement), lowerBound(toElement));
+    }
+
+    @Override
+    public SortedSet<Integer> tailSet(Integer fromElement) {
+        return new IntArraySortedSet(VALUES, lowerBound(fromElement), TO);
+    }
+
+    private int lowerBound(int value) {
+        int low = FROM, high = TO;
+        while (low < high) {
+            int middle = ((low + high) >>> 1);
+            if (VALUES[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.seudev.util.el;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Interpolates the templates whose expressions name keys with values that are templates too, like <code>${base-url}</code> whose value is <code>${scheme}://${host}</code>.
+ * <p>
+ * The sub-expression of each expression is the key of its value. The values are expanded depth-first, in a single pass:
+ * each value is scanned once and its expressions are replaced by their own expanded values, so the text of an expanded value is never scanned again,
+ * and an escaped expression of a value remains in the result as literal text. Each key is resolved only once per interpolation, even if it is used many times.
+ * <p>
+ * A key whose value uses itself, directly or through other keys, and a chain of keys deeper than the maximum depth, are reported by an {@link ExpressionException}.
+ * Each value is formatted as any interpolated expression, so the {@link ExpressionListener} is notified of each resolved key,
+ * and the failure of a key is wrapped by the failure of each expression that uses it, the innermost cause describing the chain of keys.
+ * Instances are immutable, so the same interpolator can be used concurrently by many threads if the function of the values is thread-safe.
+ */
+public final class RecursiveInterpolator {
+
+    public static final int DEFAULT_MAXIMUM_DEPTH = 64;
+
+    private final ExpressionDefinition DEFINITION;
+    private final Function<String, ?> VALUES;
+    private final int MAXIMUM_DEPTH;
+
+    public RecursiveInterpolator(ExpressionDefinition definition, Function<String, ?> values) {
+        this(definition, values, DEFAULT_MAXIMUM_DEPTH);
+    }
+
+    /**
+     * Constructs a new instance of RecursiveInterpolator.
+     *
+     * @param definition the definition of the expressions of the templates and of the values
+     * @param values the function that returns the value of a key, or null if the key is not defined; the {@link Object#toString()} of the value is interpolated
+     * @param maximumDepth the maximum number of keys that may be resolving at the same time, one inside the other
+     */
+    public RecursiveInterpolator(ExpressionDefinition definition, Function<String, ?> values, int maximumDepth) {
+        if (maximumDepth <= 0) {
+            throw new IllegalArgumentException("The maximum depth must be positive: " + maximumDepth);
+        }
+        DEFINITION = requireNonNull(definition, "definition");
+        VALUES = requireNonNull(values, "values");
+        MAXIMUM_DEPTH = maximumDepth;
+    }
+
+    public ExpressionDefinition getDefinition() {
+        return DEFINITION;
+    }
+
+    public int getMaximumDepth() {
+        return MAXIMUM_DEPTH;
+    }
+
+    /**
+     * Interpolates the given template, expanding the values of its keys recursively.
+     *
+     * @param template the text that contains the expressions
+     * @return the interpolated text
+     * @throws ExpressionException if a key is not defined, if a key uses itself, if the maximum depth is exceeded, or if a template has a syntax error
+     */
+    public String interpolate(CharSequence template) {
+        return new Resolution().interpolate(template);
+    }
+
+    /**
+     * Returns the expanded value of the given key.
+     *
+     * @param key the key
+     * @return the value of the key, with its keys expanded recursively
+     * @throws ExpressionException if a key is not defined, if a key uses itself, if the maximum depth is exceeded, or if a value has a syntax error
+     */
+    public String resolve(String key) {
+        return new Resolution().resolve(key);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("RecursiveInterpolator [DEFINITION=");
+        builder.append(DEFINITION);
+        builder.append(", MAXIMUM_DEPTH=");
+        builder.append(MAXIMUM_DEPTH);
+        builder.append("]");
+        return builder.toString();
+    }
+
+    /**
+     * The state of a single interpolation: the expanded values by key, and the keys being resolved, in the order in which they were entered.
+     */
+    private final class Resolution {
+
+        private final Map<String, String> RESOLVED = new HashMap<>();
+        private final Set<String> RESOLVING = new LinkedHashSet<>();
+
+        private String interpolate(CharSequence template) {
+            return ExpressionDefinition.interpolateExpressions(template, DEFINITION.scan(template), expression -> resolve(expression.getSubExpression()));
+        }
+
+        private String resolve(String key) {
+            String resolved = RESOLVED.get(key);
+            if (resolved != null) {
+                return resolved;
+            }
+            if (RESOLVING.contains(key)) {
+                throw new ExpressionException("The key uses itself: " + path(key));
+            }
+            if (RESOLVING.size() == MAXIMUM_DEPTH) {
+                throw new ExpressionException("The maximum depth " + MAXIMUM_DEPTH + " was exceeded: " + path(key));
+            }
+            Object value = VALUES.apply(key);
+            if (value == null) {
+                throw new ExpressionException("The key is not defined: " + path(key));
+            }
+            RESOLVING.add(key);
+            try {
+                resolved = interpolate(value.toString());
+            } finally {
+                RESOLVING.remove(key);
+            }
+            RESOLVED.put(key, resolved);
+            return resolved;
+        }
+
+        private String path(String key) {
+            StringBuilder builder = new StringBuilder();
+            for (String resolving : RESOLVING) {
+                builder.append(resolving).append(" -> ");
+            }
+            return builder.append(key).toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.seudev.util.el;
+
+/**
+ * Thrown when the scan of a template exceeds one of its {@link ScanLimits}.
+ * It is thrown to reject hostile templates cheaply, so it holds only the exceeded limit and the index where it was exceeded, and has no stack trace.
+ */
+public class ScanLimitException extends ExpressionException {
+
+    private static final long serialVersionUID = -3007493052370232542L;
+
+    private final ScanLimits.Limit LIMIT;
+    private final int INDEX;
+
+    public ScanLimitException(ScanLimits.Limit limit, int index) {
+        super("The scan limit " + limit + " was exceeded by the construct that starts at index " + index + ".", null, false, false);
+        LIMIT = limit;
+        INDEX = index;
+    }
+
+    /**
+     * Returns the index where the expression, quote literal or nested construct that exceeded the limit starts.
+     *
+     * @return the index
+     */
+    public int getIndex() {
+        return INDEX;
+    }
+
+    public ScanLimits.Limit getLimit() {
+        return LIMIT;
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.seudev.util.el;
+
+import java.io.Serializable;
+
+/**
+ * The limits of a scan of an untrusted template, see {@link ExpressionDefinition#scan(CharSequence, ScanLimits)}.
+ * <p>
+ * A scan examines each char of the template a bounded number of times, so its time is linear in the template length.
+ * The limits bound the work done before a malformed or hostile template is rejected: the scan stops as soon as a limit is exceeded,
+ * throwing a {@link ScanLimitException} that copies no text and has no stack trace.
+ */
+public final class ScanLimits implements Serializable {
+
+    private static final long serialVersionUID = -1467280153446227135L;
+
+    /**
+     * No limits, as in the scans without limits.
+     */
+    public static final ScanLimits NONE = new ScanLimits(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    private final int MAXIMUM_EXPRESSION_LENGTH;
+    private final int MAXIMUM_NESTING_DEPTH;
+    private final int MAXIMUM_EXPRESSION_COUNT;
+    private final int MAXIMUM_QUOTE_LITERAL_LENGTH;
+
+    /**
+     * @param maximumExpressionLength the maximum length of an expression, including the START and the END
+     * @param maximumNestingDepth the maximum depth of the expressions nested in an expression, and of the quote literals nested in a quote literal
+     * @param maximumExpressionCount the maximum number of expressions of a template
+     * @param maximumQuoteLiteralLength the maximum length of an ignored quote literal, including the quotes
+     */
+    public ScanLimits(int maximumExpressionLength, int maximumNestingDepth, int maximumExpressionCount, int maximumQuoteLiteralLength) {
+        if ((maximumExpressionLength <= 0) || (maximumNestingDepth <= 0) || (maximumExpressionCount <= 0) || (maximumQuoteLiteralLength <= 0)) {
+            throw new IllegalArgumentException("The scan limits must be greater than zero.");
+        }
+        MAXIMUM_EXPRESSION_LENGTH = maximumExpressionLength;
+        MAXIMUM_NESTING_DEPTH = maximumNestingDepth;
+        MAXIMUM_EXPRESSION_COUNT = maximumExpressionCount;
+        MAXIMUM_QUOTE_LITERAL_LENGTH = maximumQuoteLiteralLength;
+    }
+
+    public int getMaximumExpressionCount() {
+        return MAXIMUM_EXPRESSION_COUNT;
+    }
+
+    public int getMaximumExpressionLength() {
+        return MAXIMUM_EXPRESSION_LENGTH;
+    }
+
+    public int getMaximumNestingDepth() {
+        return MAXIMUM_NESTING_DEPTH;
+    }
+
+    public int getMaximumQuoteLiteralLength() {
+        return MAXIMUM_QUOTE_LITERAL_LENGTH;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+                .append("ScanLimits [MAXIMUM_EXPRESSION_LENGTH=").append(MAXIMUM_EXPRESSION_LENGTH)
+                .append(", MAXIMUM_NESTING_DEPTH=").append(MAXIMUM_NESTING_DEPTH)
+                .append(", MAXIMUM_EXPRESSION_COUNT=").append(MAXIMUM_EXPRESSION_COUNT)
+                .append(", MAXIMUM_QUOTE_LITERAL_LENGTH=").append(MAXIMUM_QUOTE_LITERAL_LENGTH)
+                .append("]").toString();
+    }
+
+    /**
+     * Returns the end, exclusive, of the region where a construct that starts in the given index and must not exceed the given length may be.
+     */
+    static int regionEnd(int length, int start, int maximumLength) {
+        return (int) Math.min(length, ((long) start + maximumLength));
+    }
+
+    public enum Limit {
+
+        EXPRESSION_LENGTH,
+        NESTING_DEPTH,
+        EXPRESSION_COUNT,
+        QUOTE_LITERAL_LENGTH
+
+    }
+
+}
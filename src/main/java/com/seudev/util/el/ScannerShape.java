@@ -0,0 +1,78 @@
+package com.seudev.util.el;
+
+/**
+ * The shapes of START and END for which an {@link ExpressionDefinition} has a specialized scanner.
+ * Each shape scans with a loop that compares START and END char by char, without any {@link String#startsWith(String)} call.
+ * <p>
+ * A definition selects the most specialized shape that supports its START and END, see {@link #of(String, String)},
+ * but a custom definition may select another one with {@link ExpressionDefinition#ExpressionDefinition(String, String, char, boolean, boolean, ScannerShape)}.
+ */
+public enum ScannerShape {
+
+    /**
+     * START and END of any length.
+     */
+    GENERIC {
+        @Override
+        public boolean supports(String start, String end) {
+            return true;
+        }
+
+        @Override
+        ExpressionScanner newScanner(String start, String end, char escape, boolean ignoreSingleQuoteLiteral, boolean ignoreDoubleQuoteLiteral) {
+            return new ExpressionScanner(start, end, escape, ignoreSingleQuoteLiteral, ignoreDoubleQuoteLiteral);
+        }
+    },
+
+    /**
+     * START and END of a single char, like <code>{</code> and <code>}</code>.
+     */
+    SINGLE_CHAR {
+        @Override
+        public boolean supports(String start, String end) {
+            return (start.length() == 1) && (end.length() == 1);
+        }
+
+        @Override
+        ExpressionScanner newScanner(String start, String end, char escape, boolean ignoreSingleQuoteLiteral, boolean ignoreDoubleQuoteLiteral) {
+            return new ExpressionScanner.SingleCharScanner(start, end, escape, ignoreSingleQuoteLiteral, ignoreDoubleQuoteLiteral);
+        }
+    },
+
+    /**
+     * START of two chars and END of a single char, like <code>${</code> and <code>}</code>.
+     */
+    TWO_CHAR_START {
+        @Override
+        public boolean supports(String start, String end) {
+            return (start.length() == 2) && (end.length() == 1);
+        }
+
+        @Override
+        ExpressionScanner newScanner(String start, String end, char escape, boolean ignoreSingleQuoteLiteral, boolean ignoreDoubleQuoteLiteral) {
+            return new ExpressionScanner.TwoCharStartScanner(start, end, escape, ignoreSingleQuoteLiteral, ignoreDoubleQuoteLiteral);
+        }
+    };
+
+    /**
+     * Returns the most specialized shape that supports the given START and END.
+     *
+     * @param start the START of the expressions
+     * @param end the END of the expressions
+     * @return the shape, {@link #GENERIC} if no specialized shape supports them
+     */
+    public static ScannerShape of(String start, String end) {
+        if (SINGLE_CHAR.supports(start, end)) {
+            return SINGLE_CHAR;
+        }
+        if (TWO_CHAR_START.supports(start, end)) {
+            return TWO_CHAR_START;
+        }
+        return GENERIC;
+    }
+
+    public abstract boolean supports(String start, String end);
+
+    abstract ExpressionScanner newScanner(String start, String end, char escape, boolean ignoreSingleQuoteLiteral, boolean ignoreDoubleQuoteLiteral);
+
+}
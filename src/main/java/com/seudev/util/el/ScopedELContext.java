@@ -0,0 +1,161 @@
+package com.seudev.util.el;
+
+import static java.lang.String.format;
+
+import java.beans.FeatureDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.el.ELContext;
+import javax.el.ELResolver;
+import javax.el.EvaluationListener;
+import javax.el.FunctionMapper;
+import javax.el.ImportHandler;
+import javax.el.PropertyNotWritableException;
+import javax.el.VariableMapper;
+
+/**
+ * An {@link ELContext} for a single evaluation, that resolves the identifiers from a map of variables before the resolvers of a base context.
+ * <p>
+ * It shares the functions, the variables, the imports, the listeners and the context objects of the base context, and it changes the base context only
+ * if a context object is put in it, so any number of evaluations may use their own {@link ScopedELContext}s over the same base context concurrently.
+ * The bean properties are read through the getters cached by {@link BeanAccessors} before the resolvers of the base context are asked,
+ * so a custom {@link ELResolver} of the base context cannot override the properties of the beans with public getters.
+ */
+final class ScopedELContext extends ELContext {
+
+    private final ELContext BASE;
+    private final ScopedELResolver RESOLVER;
+
+    ScopedELContext(ELContext base, Map<String, ?> variables) {
+        BASE = base;
+        RESOLVER = new ScopedELResolver(base.getELResolver(), variables);
+    }
+
+    /**
+     * Returns the context object of the base context, like the {@link javax.el.ExpressionFactory} used to coerce the values.
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Object getContext(Class key) {
+        return BASE.getContext(key);
+    }
+
+    /**
+     * Puts the context object in the base context, so it is visible to the other evaluations over the same base context too.
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void putContext(Class key, Object contextObject) {
+        BASE.putContext(key, contextObject);
+    }
+
+    @Override
+    public ELResolver getELResolver() {
+        return RESOLVER;
+    }
+
+    @Override
+    public FunctionMapper getFunctionMapper() {
+        return BASE.getFunctionMapper();
+    }
+
+    @Override
+    public VariableMapper getVariableMapper() {
+        return BASE.getVariableMapper();
+    }
+
+    @Override
+    public ImportHandler getImportHandler() {
+        return BASE.getImportHandler();
+    }
+
+    @Override
+    public List<EvaluationListener> getEvaluationListeners() {
+        return BASE.getEvaluationListeners();
+    }
+
+    @Override
+    public Locale getLocale() {
+        return BASE.getLocale();
+    }
+
+    private static final class ScopedELResolver extends ELResolver {
+
+        private final ELResolver BASE;
+        private final Map<String, ?> VARIABLES;
+
+        private ScopedELResolver(ELResolver base, Map<String, ?> variables) {
+            BASE = base;
+            VARIABLES = variables;
+        }
+
+        @Override
+        public Object getValue(ELContext context, Object base, Object property) {
+            if (base == null) {
+                if (VARIABLES.containsKey(property)) {
+                    context.setPropertyResolved(null, property);
+                    return VARIABLES.get(property);
+                }
+            } else if (property instanceof String) {
+                MethodHandle getter = BeanAccessors.getGetter(base.getClass(), (String) property);
+                if (getter != null) {
+                    return BeanAccessors.getValue(context, getter, base, (String) property);
+                }
+            }
+            return BASE.getValue(context, base, property);
+        }
+
+        @Override
+        public Class<?> getType(ELContext context, Object base, Object property) {
+            if ((base == null) && VARIABLES.containsKey(property)) {
+                context.setPropertyResolved(null, property);
+                Object value = VARIABLES.get(property);
+                return (value == null) ? null : value.getClass();
+            }
+            return BASE.getType(context, base, property);
+        }
+
+        @Override
+        public void setValue(ELContext context, Object base, Object property, Object value) {
+            if ((base == null) && VARIABLES.containsKey(property)) {
+                throw new PropertyNotWritableException(format("The variable '%s' is read-only.", property));
+            }
+            BASE.setValue(context, base, property, value);
+        }
+
+        @Override
+        public boolean isReadOnly(ELContext context, Object base, Object property) {
+            if ((base == null) && VARIABLES.containsKey(property)) {
+                context.setPropertyResolved(null, property);
+                return true;
+            }
+            return BASE.isReadOnly(context, base, property);
+        }
+
+        @Override
+        public Iterator<FeatureDescriptor> getFeatureDescriptors(ELContext context, Object base) {
+            return BASE.getFeatureDescriptors(context, base);
+        }
+
+        @Override
+        public Class<?> getCommonPropertyType(ELContext context, Object base) {
+            return BASE.getCommonPropertyType(context, base);
+        }
+
+        @Override
+        public Object invoke(ELContext context, Object base, Object method, Class<?>[] paramTypes, Object[] params) {
+            return BASE.invoke(context, base, method, paramTypes, params);
+        }
+
+        @Override
+        public Object convertToType(ELContext context, Object obj, Class<?> targetType) {
+            return BASE.convertToType(context, obj, targetType);
+        }
+
+    }
+
+}
@@ -0,0 +1,228 @@
+package com.seudev.util.el;
+
+import static com.seudev.util.el.ExpressionDefinition.formatExpression;
+import static com.seudev.util.el.ExpressionDefinitions.ofDoubleQuoteLiteral;
+import static com.seudev.util.el.ExpressionDefinitions.ofSingleQuoteLiteral;
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.function.Function;
+
+/**
+ * Interpolates a template read from a {@link Reader}, writing the output as soon as it is known.
+ * Only the expression being read is kept in memory, the literal text is written directly from the read buffer.
+ *
+ * @see ExpressionDefinition#interpolate(Reader, Appendable, Function)
+ */
+final class StreamInterpolator {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ExpressionDefinition DEFINITION;
+    private final String START;
+    private final String END;
+    private final Reader IN;
+    private final Appendable OUT;
+    private final Function<Expression, ?> FORMATTER;
+    private final StringBuilder EXPRESSION = new StringBuilder();
+
+    private char[] buffer = new char[BUFFER_SIZE];
+    private CharBuffer bufferView = CharBuffer.wrap(buffer);
+    private int position;
+    private int limit;
+    private long discarded;
+    private boolean endOfStream;
+    private int literalStart;
+
+    StreamInterpolator(ExpressionDefinition definition, Reader in, Appendable out, Function<Expression, ?> formatter) {
+        DEFINITION = definition;
+        START = definition.getStart();
+        END = definition.getEnd();
+        IN = in;
+        OUT = out;
+        FORMATTER = formatter;
+    }
+
+    void interpolate() throws IOException {
+        char escape = DEFINITION.getEscape();
+        while (fill(1)) {
+            char c = buffer[position];
+
+            if (c == escape) {
+                flushLiteral();
+                position++;
+                literalStart = position;
+                if (fill(1)) {
+                    position++;
+                }
+                continue;
+            }
+            if (DEFINITION.ignoreSingleQuoteLiteral(c) || DEFINITION.ignoreDoubleQuoteLiteral(c)) {
+                readQuoteLiteral(null);
+                continue;
+            }
+            if (startsWith(START)) {
+                flushLiteral();
+                literalStart = -1;
+                String formattedValue = formatExpression(readExpression(), FORMATTER);
+                OUT.append(formattedValue);
+                literalStart = position;
+                continue;
+            }
+            position++;
+        }
+        flushLiteral();
+    }
+
+    private boolean fill(int length) throws IOException {
+        if ((limit - position) >= length) {
+            return true;
+        }
+        if (endOfStream) {
+            return false;
+        }
+        flushLiteral();
+        int remaining = (limit - position);
+        if (length > buffer.length) {
+            char[] newBuffer = new char[Math.max(length, buffer.length * 2)];
+            System.arraycopy(buffer, position, newBuffer, 0, remaining);
+            buffer = newBuffer;
+            bufferView = CharBuffer.wrap(buffer);
+        } else {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        }
+        discarded += position;
+        if (literalStart >= 0) {
+            literalStart = 0;
+        }
+        position = 0;
+        limit = remaining;
+        while ((limit < length) && (!endOfStream)) {
+            int read = IN.read(buffer, limit, (buffer.length - limit));
+            if (read < 0) {
+                endOfStream = true;
+            } else {
+                limit += read;
+            }
+        }
+        return ((limit - position) >= length);
+    }
+
+    private void flushLiteral() throws IOException {
+        if ((literalStart < 0) || (literalStart >= position)) {
+            return;
+        }
+        if (OUT instanceof Writer) {
+            ((Writer) OUT).write(buffer, literalStart, (position - literalStart));
+        } else if (OUT instanceof StringBuilder) {
+            ((StringBuilder) OUT).append(buffer, literalStart, (position - literalStart));
+        } else {
+            OUT.append(bufferView, literalStart, position);
+        }
+        literalStart = position;
+    }
+
+    private Expression readExpression() throws IOException {
+        long start = (discarded + position);
+        EXPRESSION.setLength(0);
+        EXPRESSION.append(START);
+        position += START.length();
+
+        char escape = DEFINITION.getEscape();
+        int openeds = 0;
+        while (fill(1)) {
+            char c = buffer[position];
+
+            if (c == escape) {
+                EXPRESSION.append(c);
+                position++;
+                if (fill(1)) {
+                    EXPRESSION.append(buffer[position++]);
+                }
+                continue;
+            }
+            if (DEFINITION.ignoreSingleQuoteLiteral(c) || DEFINITION.ignoreDoubleQuoteLiteral(c)) {
+                readQuoteLiteral(EXPRESSION);
+                continue;
+            }
+            if (startsWith(END)) {
+                if (openeds == 0) {
+                    EXPRESSION.append(END);
+                    position += END.length();
+                    String expression = EXPRESSION.toString();
+                    return new Expression(toIndex(start), expression, expression.substring(START.length(), (expression.length() - END.length())), DEFINITION);
+                }
+                openeds--;
+            } else if (startsWith(START)) {
+                openeds++;
+            }
+            EXPRESSION.append(c);
+            position++;
+        }
+        throw new ExpressionException(format("Syntax error, insert \"%s\" to complete the expression: %s\nOr use the escape char %s before of the %s to escape this expression.",
+                END, EXPRESSION, escape, START));
+    }
+
+    /**
+     * Reads the quote literal that starts in the current position, including the quote literals nested on it.
+     * The chars are appended to the given builder, or kept in the pending literal text if the builder is null.
+     */
+    private void readQuoteLiteral(StringBuilder builder) throws IOException {
+        long start = (discarded + position);
+        char quote = buffer[position];
+        take(builder);
+
+        int depth = 1;
+        while (depth > 0) {
+            if (!fill(1)) {
+                throw new ExpressionException(format("Syntax error, insert \"%s\" to complete the quote literal that starts at index %d.", quote, start));
+            }
+            ExpressionDefinition literal = (quote == '\'') ? ofSingleQuoteLiteral() : ofDoubleQuoteLiteral();
+            char c = buffer[position];
+
+            if (c == literal.getEscape()) {
+                take(builder);
+                if (fill(1)) {
+                    take(builder);
+                }
+            } else if (c == quote) {
+                take(builder);
+                quote = (quote == '\'') ? '"' : '\'';
+                depth--;
+            } else if (literal.ignoreSingleQuoteLiteral(c) || literal.ignoreDoubleQuoteLiteral(c)) {
+                take(builder);
+                quote = c;
+                depth++;
+            } else {
+                take(builder);
+            }
+        }
+    }
+
+    private boolean startsWith(String token) throws IOException {
+        if (!fill(token.length())) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (buffer[position + i] != token.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void take(StringBuilder builder) {
+        if (builder != null) {
+            builder.append(buffer[position]);
+        }
+        position++;
+    }
+
+    private int toIndex(long index) {
+        return (index > Integer.MAX_VALUE) ? -1 : (int) index;
+    }
+
+}
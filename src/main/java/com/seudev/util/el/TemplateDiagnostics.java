@@ -0,0 +1,101 @@
+package com.seudev.util.el;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableList;
+
+import java.util.List;
+
+/**
+ * The result of validating a template with {@link ExpressionDefinition#validate(CharSequence)}: the syntax errors, and the expressions that could be recovered.
+ * <p>
+ * The errors are kept as offsets and kinds in arrays, so neither the template nor an exception is copied for each error.
+ */
+public final class TemplateDiagnostics {
+
+    private final Expression[] EXPRESSIONS;
+    private final int[] ERROR_OFFSETS;
+    private final ErrorKind[] ERROR_KINDS;
+    private final boolean TRUNCATED;
+
+    TemplateDiagnostics(Expression[] expressions, int[] errorOffsets, ErrorKind[] errorKinds, boolean truncated) {
+        EXPRESSIONS = expressions;
+        ERROR_OFFSETS = errorOffsets;
+        ERROR_KINDS = errorKinds;
+        TRUNCATED = truncated;
+    }
+
+    public int getErrorCount() {
+        return ERROR_OFFSETS.length;
+    }
+
+    public ErrorKind getErrorKind(int errorIndex) {
+        return ERROR_KINDS[errorIndex];
+    }
+
+    /**
+     * Returns the index of the template where the given error starts: the START of the unclosed expression, the quote of the unclosed quote literal,
+     * or the {@link ScanLimitException#getIndex() index} of the construct that exceeded a limit.
+     *
+     * @param errorIndex the index of the error, between zero and {@link #getErrorCount()}
+     * @return the index of the template
+     */
+    public int getErrorOffset(int errorIndex) {
+        return ERROR_OFFSETS[errorIndex];
+    }
+
+    /**
+     * Returns the well-formed expressions, in the order in which they appear, up to the first unclosed expression or unclosed quote literal of an expression.
+     * The STARTs that follow it are reported as unclosed expressions, see {@link ExpressionDefinition#validate(CharSequence, int)}.
+     *
+     * @return an unmodifiable list of expressions
+     */
+    public List<Expression> getExpressions() {
+        return unmodifiableList(asList(EXPRESSIONS));
+    }
+
+    /**
+     * Returns whether the validation stopped before the end of the template because the maximum number of errors was reached,
+     * or because a {@link ScanLimits scan limit} was exceeded.
+     *
+     * @return true if the validation stopped early
+     */
+    public boolean isTruncated() {
+        return TRUNCATED;
+    }
+
+    public boolean isValid() {
+        return (ERROR_OFFSETS.length == 0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder()
+                .append("TemplateDiagnostics [EXPRESSIONS=").append(EXPRESSIONS.length)
+                .append(", ERRORS=[");
+        for (int i = 0; i < ERROR_OFFSETS.length; i++) {
+            builder.append((i == 0) ? "" : ", ").append(ERROR_KINDS[i]).append('@').append(ERROR_OFFSETS[i]);
+        }
+        return builder.append("], TRUNCATED=").append(TRUNCATED)
+                .append("]").toString();
+    }
+
+    public enum ErrorKind {
+
+        /**
+         * An expression whose END was not found.
+         */
+        UNCLOSED_EXPRESSION,
+
+        /**
+         * A quote literal whose closing quote was not found.
+         */
+        UNCLOSED_QUOTE_LITERAL,
+
+        /**
+         * A construct that exceeded one of the {@link ScanLimits} of the validation. The validation stops at this error.
+         */
+        LIMIT_EXCEEDED
+
+    }
+
+}
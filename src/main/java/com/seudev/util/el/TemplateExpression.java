@@ -0,0 +1,133 @@
+package com.seudev.util.el;
+
+import java.nio.CharBuffer;
+
+/**
+ * An {@link Expression} backed by its template, that keeps only the template reference and the offsets of the expression.
+ * <p>
+ * The expression strings and the hash code of the expression are created on first use and kept, so the repeated calls of the getters do not copy the chars
+ * again. The template is referenced by this expression while it is reachable, and is never serialized: this expression is serialized as a copy that holds
+ * only the expression strings.
+ */
+final class TemplateExpression extends Expression {
+    
+    private static final long serialVersionUID = -2561473385046823917L;
+    
+    private final String SOURCE;
+    private final int LENGTH;
+    private final int SUB_START;
+    private final int SUB_LENGTH;
+    private final int SUB_EXPRESSION_HASH;
+    
+    private String expression;
+    private String subExpression;
+    private int expressionHash;
+    
+    /**
+     * Constructs a new instance of TemplateExpression.
+     *
+     * @param template the template that contains the expression
+     * @param start the index of the first char of the expression
+     * @param end the index after the last char of the expression
+     * @param subExpressionStart the index of the first char of the sub-expression
+     * @param subExpressionEnd the index after the last char of the sub-expression
+     * @param definition the definition that matched the expression, or null
+     */
+    TemplateExpression(String template, int start, int end, int subExpressionStart, int subExpressionEnd, ExpressionDefinition definition) {
+        super(start, definition);
+        if ((start < 0) || (start > subExpressionStart) || (subExpressionStart > subExpressionEnd) || (subExpressionEnd > end) || (end > template.length())) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", subExpressionStart: " + subExpressionStart + ", subExpressionEnd: " + subExpressionEnd);
+        }
+        SOURCE = template;
+        LENGTH = (end - start);
+        SUB_START = subExpressionStart;
+        SUB_LENGTH = (subExpressionEnd - subExpressionStart);
+        
+        int hash = 0;
+        for (int i = subExpressionStart; i < subExpressionEnd; i++) {
+            hash = ((31 * hash) + template.charAt(i));
+        }
+        SUB_EXPRESSION_HASH = hash;
+    }
+    
+    @Override
+    public int getEnd() {
+        return (getStart() + LENGTH);
+    }
+    
+    @Override
+    public String getExpression() {
+        String expression = this.expression;
+        if (expression == null) {
+            this.expression = expression = SOURCE.substring(getStart(), getEnd());
+        }
+        return expression;
+    }
+    
+    @Override
+    public CharSequence getExpressionSequence() {
+        String expression = this.expression;
+        return (expression == null) ? CharBuffer.wrap(SOURCE, getStart(), getEnd()) : expression;
+    }
+    
+    @Override
+    public String getSubExpression() {
+        String subExpression = this.subExpression;
+        if (subExpression == null) {
+            this.subExpression = subExpression = SOURCE.substring(SUB_START, (SUB_START + SUB_LENGTH));
+        }
+        return subExpression;
+    }
+    
+    @Override
+    public int getSubExpressionHash() {
+        return SUB_EXPRESSION_HASH;
+    }
+    
+    @Override
+    public CharSequence getSubExpressionSequence() {
+        String subExpression = this.subExpression;
+        return (subExpression == null) ? CharBuffer.wrap(SOURCE, SUB_START, (SUB_START + SUB_LENGTH)) : subExpression;
+    }
+    
+    @Override
+    boolean contentEquals(CharSequence expression) {
+        if (expression.length() != LENGTH) {
+            return false;
+        }
+        if (expression instanceof String) {
+            return SOURCE.regionMatches(getStart(), (String) expression, 0, LENGTH);
+        }
+        for (int i = 0, start = getStart(); i < LENGTH; i++) {
+            if (SOURCE.charAt(start + i) != expression.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    Expression detach() {
+        return new Expression(getStart(), getExpression(), getSubExpression(), getDefinition());
+    }
+    
+    @Override
+    int getExpressionHash() {
+        int hash = expressionHash;
+        if ((hash == 0) && (LENGTH > 0)) {
+            for (int i = getStart(), end = getEnd(); i < end; i++) {
+                hash = ((31 * hash) + SOURCE.charAt(i));
+            }
+            expressionHash = hash;
+        }
+        return hash;
+    }
+    
+    /**
+     * Serializes this expression as a copy that holds only the expression strings.
+     */
+    private Object writeReplace() {
+        return detach();
+    }
+    
+}
@@ -0,0 +1,254 @@
+package com.seudev.util.el;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.unmodifiableSet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.seudev.util.io.Resources;
+
+/**
+ * A set of templates scanned in advance, usually at build time by the {@link TemplateIndexGenerator}, and stored in a compact binary format.
+ * Loading an index reads it with one bulk read and rebuilds the segments, expressions and escape indexes of each template, without scanning the templates.
+ * <p>
+ * The index records the configuration of the {@link ExpressionDefinition} that scanned the templates, so it is rejected if it is read with another configuration.
+ * The templates are identified by their resource names.
+ */
+public final class TemplateIndex {
+
+    /** The bytes "STIX" that start every index. */
+    static final int MAGIC = 0x53544958;
+
+    /** The version of the binary format, incremented on each incompatible change. */
+    static final short VERSION = 1;
+
+    private final ExpressionDefinition DEFINITION;
+    private final Map<String, CompiledTemplate> TEMPLATES;
+    private final Map<String, ExpressionScan> SCANS;
+
+    private TemplateIndex(ExpressionDefinition definition, Map<String, CompiledTemplate> templates, Map<String, ExpressionScan> scans) {
+        DEFINITION = definition;
+        TEMPLATES = templates;
+        SCANS = scans;
+    }
+
+    /**
+     * Scans the given templates.
+     *
+     * @param definition the definition that scans the templates
+     * @param templates the templates by resource name
+     * @return the index of the templates
+     */
+    public static TemplateIndex of(ExpressionDefinition definition, Map<String, String> templates) {
+        Map<String, CompiledTemplate> compiledTemplates = new LinkedHashMap<>();
+        Map<String, ExpressionScan> scans = new LinkedHashMap<>();
+        for (Map.Entry<String, String> template : templates.entrySet()) {
+            ExpressionScan scan = definition.scan(template.getValue());
+            scans.put(template.getKey(), scan);
+            compiledTemplates.put(template.getKey(), new CompiledTemplate(template.getValue(), scan));
+        }
+        return new TemplateIndex(definition, compiledTemplates, scans);
+    }
+
+    /**
+     * Loads the index stored in the given resource.
+     *
+     * @param resource the resource name of the index
+     * @param definition the definition that scanned the templates
+     * @return the index, or null if the resource is not found
+     * @throws IOException if the resource cannot be read or is not a valid index
+     * @throws ExpressionException if the index was built with another definition configuration
+     */
+    public static TemplateIndex load(String resource, ExpressionDefinition definition) throws IOException {
+        InputStream in = Resources.getResourceAsStream(resource);
+        if (in == null) {
+            return null;
+        }
+        try (InputStream stream = in) {
+            return read(stream, definition);
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #write(OutputStream)}. The stream is read until its end, and is not closed.
+     *
+     * @param in the stream of the index
+     * @param definition the definition that scanned the templates
+     * @return the index
+     * @throws IOException if the stream cannot be read or is not a valid index
+     * @throws ExpressionException if the index was built with another definition configuration
+     */
+    public static TemplateIndex read(InputStream in, ExpressionDefinition definition) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            bytes.write(buffer, 0, read);
+        }
+        try {
+            return read(ByteBuffer.wrap(bytes.toByteArray()), definition);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+            EOFException eof = new EOFException("The template index is truncated.");
+            eof.initCause(ex);
+            throw eof;
+        }
+    }
+
+    private static TemplateIndex read(ByteBuffer in, ExpressionDefinition definition) throws IOException {
+        if (in.getInt() != MAGIC) {
+            throw new IOException("The stream is not a template index.");
+        }
+        short version = in.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported template index version: " + version);
+        }
+        String start = readString(in), end = readString(in);
+        char escape = in.getChar();
+        boolean ignoreSingleQuoteLiteral = (in.get() != 0), ignoreDoubleQuoteLiteral = (in.get() != 0);
+        if (!start.equals(definition.getStart()) || !end.equals(definition.getEnd()) || (escape != definition.getEscape())
+                || (ignoreSingleQuoteLiteral != definition.isIgnoreSingleQuoteLiteral()) || (ignoreDoubleQuoteLiteral != definition.isIgnoreDoubleQuoteLiteral())) {
+            throw new ExpressionException("The template index was built for another expression definition: " + new ExpressionDefinition(start, end, escape, ignoreSingleQuoteLiteral, ignoreDoubleQuoteLiteral));
+        }
+
+        int size = in.getInt();
+        Map<String, CompiledTemplate> templates = new LinkedHashMap<>(Math.max(16, (size * 4) / 3 + 1));
+        Map<String, ExpressionScan> scans = new LinkedHashMap<>(Math.max(16, (size * 4) / 3 + 1));
+        for (int t = 0; t < size; t++) {
+            String name = readString(in);
+
+            Expression[] expressions = new Expression[in.getInt()];
+            for (int i = 0; i < expressions.length; i++) {
+                int expressionStart = in.getInt();
+                String expression = readString(in);
+                String subExpression = expression.substring(start.length(), (expression.length() - end.length()));
+                expressions[i] = new Expression(expressionStart, expression, subExpression, definition);
+            }
+            int[] escapes = readInts(in, in.getInt());
+            int[] escapesBounds = readInts(in, (expressions.length + 1));
+            String[] segments = new String[expressions.length + 1];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = readString(in);
+            }
+
+            scans.put(name, (expressions.length == 0) ? ExpressionScan.EMPTY : new ExpressionScan(expressions, escapes, escapesBounds));
+            templates.put(name, new CompiledTemplate(segments, expressions));
+        }
+        if (in.hasRemaining()) {
+            throw new IOException("The template index has unexpected bytes after its end.");
+        }
+        return new TemplateIndex(definition, templates, scans);
+    }
+
+    private static int[] readInts(ByteBuffer in, int length) {
+        int[] values = new int[length];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + (length * 4));
+        return values;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        String value = new String(in.array(), (in.arrayOffset() + in.position()), length, UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    public ExpressionDefinition getDefinition() {
+        return DEFINITION;
+    }
+
+    public Set<String> getNames() {
+        return unmodifiableSet(TEMPLATES.keySet());
+    }
+
+    /**
+     * Returns the scan of the given template.
+     * As in {@link ExpressionDefinition#interpolate(CharSequence, ExpressionScan, java.util.function.Function)}, it must be used with the original template text.
+     *
+     * @param name the resource name of the template
+     * @return the scan, or null if the template is not indexed
+     */
+    public ExpressionScan getScan(String name) {
+        return SCANS.get(name);
+    }
+
+    /**
+     * Returns the compiled template, that is rendered without the original template text.
+     *
+     * @param name the resource name of the template
+     * @return the compiled template, or null if the template is not indexed
+     */
+    public CompiledTemplate getTemplate(String name) {
+        return TEMPLATES.get(name);
+    }
+
+    public int size() {
+        return TEMPLATES.size();
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+                .append("TemplateIndex [DEFINITION=").append(DEFINITION)
+                .append(", TEMPLATES=").append(TEMPLATES.keySet())
+                .append("]").toString();
+    }
+
+    /**
+     * Writes this index. The stream is flushed, but not closed.
+     *
+     * @param out the stream where the index is written
+     * @throws IOException if the index cannot be written
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        writeString(data, DEFINITION.getStart());
+        writeString(data, DEFINITION.getEnd());
+        data.writeChar(DEFINITION.getEscape());
+        data.writeBoolean(DEFINITION.isIgnoreSingleQuoteLiteral());
+        data.writeBoolean(DEFINITION.isIgnoreDoubleQuoteLiteral());
+
+        data.writeInt(TEMPLATES.size());
+        for (Map.Entry<String, CompiledTemplate> template : TEMPLATES.entrySet()) {
+            ExpressionScan scan = SCANS.get(template.getKey());
+            writeString(data, template.getKey());
+
+            data.writeInt(scan.EXPRESSIONS.length);
+            for (Expression expression : scan.EXPRESSIONS) {
+                data.writeInt(expression.getStart());
+                writeString(data, expression.getExpression());
+            }
+            data.writeInt(scan.ESCAPES.length);
+            for (int escape : scan.ESCAPES) {
+                data.writeInt(escape);
+            }
+            for (int bound : scan.ESCAPES_BOUNDS) {
+                data.writeInt(bound);
+            }
+            for (String segment : template.getValue().getSegments()) {
+                writeString(data, segment);
+            }
+        }
+        data.flush();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+}
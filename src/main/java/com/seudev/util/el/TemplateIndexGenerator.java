@@ -0,0 +1,100 @@
+package com.seudev.util.el;
+
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import com.seudev.util.io.Resources;
+
+/**
+ * Writes the {@link TemplateIndex} of the templates under a resource prefix, so they are not scanned at runtime.
+ * It is meant to run at build time, after the resources are copied, for example with the {@code exec-maven-plugin}:
+ *
+ * <pre>
+ * &lt;plugin&gt;
+ *     &lt;groupId&gt;org.codehaus.mojo&lt;/groupId&gt;
+ *     &lt;artifactId&gt;exec-maven-plugin&lt;/artifactId&gt;
+ *     &lt;executions&gt;
+ *         &lt;execution&gt;
+ *             &lt;phase&gt;process-classes&lt;/phase&gt;
+ *             &lt;goals&gt;&lt;goal&gt;java&lt;/goal&gt;&lt;/goals&gt;
+ *             &lt;configuration&gt;
+ *                 &lt;mainClass&gt;com.seudev.util.el.TemplateIndexGenerator&lt;/mainClass&gt;
+ *                 &lt;arguments&gt;
+ *                     &lt;argument&gt;${project.build.outputDirectory}&lt;/argument&gt;
+ *                     &lt;argument&gt;templates&lt;/argument&gt;
+ *                     &lt;argument&gt;.html&lt;/argument&gt;
+ *                 &lt;/arguments&gt;
+ *             &lt;/configuration&gt;
+ *         &lt;/execution&gt;
+ *     &lt;/executions&gt;
+ * &lt;/plugin&gt;
+ * </pre>
+ *
+ * The arguments are the resources directory, the resource prefix, the suffix of the template names and, optionally, the class name of the
+ * {@link ExpressionDefinition}, that must have a public no-argument constructor and defaults to {@link ExpressionDefinitions.DollarCurlyBracket}.
+ * The templates are read as {@link Resources#readLines(java.io.InputStream)} reads them, and the index is written to the resource
+ * {@code <prefix>/}{@value #INDEX_NAME}, which is loaded with {@link TemplateIndex#load(String, ExpressionDefinition)}.
+ */
+public final class TemplateIndexGenerator {
+
+    public static final String INDEX_NAME = "templates.idx";
+
+    private TemplateIndexGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if ((args.length < 3) || (args.length > 4)) {
+            System.err.println("Usage: TemplateIndexGenerator <resources directory> <resource prefix> <template suffix> [<expression definition class>]");
+            System.exit(1);
+        }
+        ExpressionDefinition definition = (args.length == 4)
+                ? (ExpressionDefinition) Class.forName(args[3]).getConstructor().newInstance()
+                : new ExpressionDefinitions.DollarCurlyBracket();
+
+        Path index = generate(Paths.get(args[0]), args[1], args[2], definition);
+        System.out.println("Template index written to " + index);
+    }
+
+    /**
+     * Writes the index of the templates under the given resource prefix.
+     *
+     * @param directory the resources directory
+     * @param prefix the resource prefix of the templates, relative to the directory
+     * @param suffix the suffix of the template names
+     * @param definition the definition that scans the templates
+     * @return the path of the written index
+     * @throws IOException if a template cannot be read or the index cannot be written
+     */
+    public static Path generate(Path directory, String prefix, String suffix, ExpressionDefinition definition) throws IOException {
+        Path root = directory.resolve(prefix);
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(root)) {
+            files = paths.filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().endsWith(suffix))
+                    .sorted()
+                    .collect(toList());
+        }
+
+        Map<String, String> templates = new LinkedHashMap<>();
+        for (Path file : files) {
+            String name = directory.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+            templates.put(name, Resources.readLines(Files.newInputStream(file)));
+        }
+
+        Path index = root.resolve(INDEX_NAME);
+        try (OutputStream out = Files.newOutputStream(index)) {
+            TemplateIndex.of(definition, templates).write(out);
+        }
+        return index;
+    }
+
+}
@@ -7,9 +7,11 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -99,6 +101,18 @@ public class Resources {
 		return Resources.class.getClassLoader().getResourceAsStream(name);
 	}
 
+	/**
+	 * Returns a reader of the given resource, allowing to process big resources without load them fully in memory.
+	 *
+	 * @param name the resource name
+	 * @param charset the charset of the resource
+	 * @return the reader, or null if the resource is not found
+	 */
+	public static Reader getResourceAsReader(String name, Charset charset) {
+		InputStream stream = getResourceAsStream(name);
+		return (stream == null) ? null : new InputStreamReader(stream, charset);
+	}
+
 	public static Set<URL> getResources(ClassLoader classLoader, String name) {
 		try {
 			Enumeration<URL> resources = classLoader.getResources(name);
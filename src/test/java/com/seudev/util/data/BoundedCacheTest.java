@@ -0,0 +1,95 @@
+package com.seudev.util.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class BoundedCacheTest {
+
+    @Test
+    public void testComputeIfAbsent() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(10);
+        assertEquals(Integer.valueOf(3), cache.computeIfAbsent("foo", String::length));
+        assertEquals(Integer.valueOf(3), cache.computeIfAbsent("foo", key -> -1));
+
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testMaximumSize() {
+        for (int maximumSize : new int[]{1, 3, 10, 17, 100}) {
+            BoundedCache<Integer, Integer> cache = new BoundedCache<>(maximumSize);
+            for (int i = 0; i < 1000; i++) {
+                cache.put(i, i);
+                assertTrue(cache.size() <= maximumSize);
+            }
+            assertEquals(maximumSize, cache.size());
+        }
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(64);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int seed = t;
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 100_000; i++) {
+                        int key = ((i * 31) + seed) % 256;
+                        assertEquals(Integer.valueOf(key), cache.computeIfAbsent(key, k -> k));
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(cache.size() <= 64);
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(2, Long.MAX_VALUE, (key, value) -> 0, 1);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+        cache.put("c", 3);
+
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(Integer.valueOf(3), cache.get("c"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testEvictByWeight() {
+        BoundedCache<String, String> cache = new BoundedCache<>(100, 10, (key, value) -> value.length(), 1);
+        cache.put("a", "12345");
+        cache.put("b", "1234");
+        cache.put("c", "12");
+
+        assertNull(cache.get("a"));
+        assertEquals("1234", cache.get("b"));
+        assertEquals("12", cache.get("c"));
+
+        cache.put("d", "12345678901");
+        assertNull(cache.get("d"));
+        assertEquals("1234", cache.get("b"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.seudev.util.el;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.el.ELContext;
+import javax.el.ELManager;
+import javax.el.ELProcessor;
+import javax.el.ValueExpression;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compares the compiled expressions with the expressions of the EL implementation, that must give the same results and the same errors.
+ */
+public class ExpressionCompilerTest {
+
+    private static final String[] BINARY_OPERATORS = {"+", "-", "*", "/", "div", "%", "mod", "==", "!=", "<", ">", "<=", ">=", "lt", "ge", "&&", "or"};
+
+    private ELProcessor elProcessor;
+    private Map<String, Object> operands;
+
+    @Before
+    public void setUp() {
+        elProcessor = new ELProcessor();
+        operands = new LinkedHashMap<>();
+        operands.put("l", 7L);
+        operands.put("zero", 0L);
+        operands.put("i", -3);
+        operands.put("s", (short) 4);
+        operands.put("b", (byte) 2);
+        operands.put("d", 2.5);
+        operands.put("nz", -0.0);
+        operands.put("nan", Double.NaN);
+        operands.put("f", 1.5f);
+        operands.put("bd", new BigDecimal("3.25"));
+        operands.put("bi", new BigInteger("12345678901234567890"));
+        operands.put("integerText", "12");
+        operands.put("decimalText", "1.5");
+        operands.put("text", "abc");
+        operands.put("blank", "");
+        operands.put("t", Boolean.TRUE);
+        operands.put("falseText", "false");
+        operands.put("c", 'x');
+        operands.put("unit", TimeUnit.SECONDS);
+        operands.put("unitText", "SECONDS");
+        operands.put("list", asList(1L, 2L, 3L));
+        operands.put("array", new Object[0]);
+        Map<String, Object> map = new HashMap<>();
+        map.put("amount", 10L);
+        map.put("nested", Collections.singletonMap("value", "deep"));
+        map.put("7", "seven");
+        operands.put("map", map);
+        operands.put("order", new Order());
+        operands.forEach(elProcessor::defineBean);
+    }
+
+    @Test
+    public void testOperators() {
+        List<String> operandNames = new ArrayList<>(operands.keySet());
+        operandNames.add("null");
+        operandNames.add("1");
+        operandNames.add("0.5");
+        operandNames.add("'a'");
+        operandNames.add("true");
+        for (String a : operandNames) {
+            assertSameResult("-" + a);
+            assertSameResult("!" + a);
+            assertSameResult("not " + a);
+            assertSameResult("empty " + a);
+            assertSameResult(a + " ? 'yes' : 'no'");
+            for (String b : operandNames) {
+                for (String operator : BINARY_OPERATORS) {
+                    assertSameResult(a + " " + operator + " " + b);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPropertiesAndPrecedence() {
+        assertSameResult("order.customer.name");
+        assertSameResult("order.customer.tier > 1 ? 'gold' : 'silver'");
+        assertSameResult("order['customer']['name']");
+        assertSameResult("order.total * 2 + order.customer.tier");
+        assertSameResult("order.customer.missing");
+        assertSameResult("order.failing");
+        assertSameResult("order.nothing.name");
+        assertSameResult("map.amount - 1");
+        assertSameResult("map.nested.value");
+        assertSameResult("map['nested']['value']");
+        assertSameResult("map[l]");
+        assertSameResult("map.missing.value");
+        assertSameResult("map[null]");
+        assertSameResult("list[1] * list[2]");
+        assertSameResult("list[l]");
+        assertSameResult("list['x']");
+        assertSameResult("unknown");
+        assertSameResult("unknown.name");
+        assertSameResult("Integer.MAX_VALUE + 1");
+        assertSameResult("Boolean.TRUE == t");
+        assertSameResult("1 + 2 * 3 - 4 / 2 % 3");
+        assertSameResult("(1 + 2) * -(3 - 4)");
+        assertSameResult("1e3 + .5 + 1. + 2E-2");
+        assertSameResult("'it\\'s' == \"it's\" and \"a\\\\b\" != 'a\\\\b'");
+        assertSameResult("l > i && i < 0 || empty text ? (d ge 2 ? 'a' : 'b') : 'c'");
+        assertSameResult("not empty list and list[0] eq 1");
+        assertSameResult("true ? false ? 1 : 2 : 3");
+        assertSameResult("99999999999999999999 + 1");
+    }
+
+    @Test
+    public void testCompiledSubset() {
+        ELContext context = elProcessor.getELManager().getELContext();
+        for (String expression : asList("order.customer.tier > 1 ? 'gold' : 'silver'", "map['nested'].value", "-l * (d + 1) div 2", "empty text or not t")) {
+            assertTrue(expression, ExpressionCompiler.isCompiled(ExpressionCompiler.compile(expression, context)));
+        }
+        for (String expression : asList("list.size()", "text.length() > 2", "((x) -> x + 1)(l)", "[1, 2]", "{'a': 1}", "text += 'd'", "v = 1; v", "99999999999999999999")) {
+            assertFalse(expression, ExpressionCompiler.isCompiled(ExpressionCompiler.compile(expression, context)));
+            assertSameResult(expression);
+        }
+    }
+
+    @Test
+    public void testEvaluatorDirectCompilation() {
+        ExpressionEvaluator evaluator = new ExpressionEvaluator(elProcessor, ExpressionEvaluator.DEFAULT_CACHE_SIZE);
+        evaluator.setDirectCompilation(true);
+        assertEquals("gold", evaluator.eval("order.customer.tier > 1 ? 'gold' : 'silver'"));
+        assertEquals(Long.valueOf(27), evaluator.evalAsLong("order.total * 2 + order.customer.tier"));
+        assertTrue(ExpressionCompiler.isCompiled(evaluator.getValueExpressionCache().get("order.total * 2 + order.customer.tier")));
+    }
+
+    private void assertSameResult(String expression) {
+        ELContext context = elProcessor.getELManager().getELContext();
+        String expected = evaluate(ELManager.getExpressionFactory().createValueExpression(context, ("${" + expression + "}"), Object.class), context);
+        String actual = evaluate(ExpressionCompiler.compile(expression, context), context);
+        assertEquals(expression, expected, actual);
+    }
+
+    private static String evaluate(ValueExpression valueExpression, ELContext context) {
+        try {
+            Object value = valueExpression.getValue(context);
+            return (value == null) ? "null" : (value.getClass().getName() + ": " + value);
+        } catch (RuntimeException ex) {
+            return ex.toString();
+        }
+    }
+
+    public static class Order {
+
+        public Customer getCustomer() {
+            return new Customer();
+        }
+
+        public Customer getNothing() {
+            return null;
+        }
+
+        public Integer getTotal() {
+            return 12;
+        }
+
+        public Object getFailing() {
+            throw new IllegalStateException("The order failed.");
+        }
+
+    }
+
+    public static class Customer {
+
+        public String getName() {
+            return "Ana";
+        }
+
+        public int getTier() {
+            return 3;
+        }
+
+    }
+
+}
@@ -0,0 +1,232 @@
+package com.seudev.util.el;
+
+import static com.seudev.util.el.ExpressionEvaluator.DEFAULT_CACHE_SIZE;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.el.ELContext;
+import javax.el.ELManager;
+import javax.el.ELProcessor;
+import javax.el.ExpressionFactory;
+import javax.el.PropertyNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.seudev.util.el.ExpressionEvaluator.ConcurrencyMode;
+
+public class ExpressionEvaluatorTest {
+
+    private ELProcessor elProcessor;
+    private ExpressionEvaluator evaluator;
+
+    @Before
+    public void setUp() {
+        elProcessor = new ELProcessor();
+        Map<String, Object> order = new HashMap<>();
+        order.put("amount", 10L);
+        order.put("discount", 0.5);
+        elProcessor.defineBean("order", order);
+        evaluator = new ExpressionEvaluator(elProcessor, DEFAULT_CACHE_SIZE);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCachedEvaluation() {
+        assertEquals(Long.valueOf(20), evaluator.evalAsLong("order.amount * 2"));
+        assertEquals(Long.valueOf(20), evaluator.evalAsLong("order.amount * 2"));
+        assertEquals(1, evaluator.getValueExpressionCache().getMissCount());
+        assertEquals(1, evaluator.getValueExpressionCache().getHitCount());
+
+        ((Map<String, Object>) elProcessor.eval("order")).put("amount", 15L);
+        assertEquals(Long.valueOf(30), evaluator.evalAsLong("order.amount * 2"));
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        ExpressionMetrics metrics = ExpressionMetrics.install();
+        try {
+            assertSame(metrics, ExpressionListeners.getListener());
+            ExpressionDefinitions.ofDollarCurlyBracket().interpolate("Total: ${order.amount * 2} \\${escaped}", e -> evaluator.eval(e.getSubExpression()));
+            try {
+                evaluator.eval("order.amount +");
+                fail();
+            } catch (RuntimeException e) {
+                // The expression is invalid.
+            }
+
+            assertEquals(1, metrics.getScanNanos().getCount());
+            assertEquals(1, metrics.getScannedExpressionCount());
+            assertEquals(1, metrics.getScannedEscapeCount());
+            assertEquals(1, metrics.getFormatNanos().getCount());
+            assertEquals(1, metrics.getEvaluationNanos().getCount());
+            assertEquals(1, metrics.getEvaluationFailureCount());
+            assertEquals(asList("order.amount * 2"), new ArrayList<>(metrics.getSlowestEvaluations().keySet()));
+            assertEquals(asList("${order.amount * 2}"), new ArrayList<>(metrics.getSlowestFormats().keySet()));
+            assertEquals(1, metrics.getSlowestFormats().get("${order.amount * 2}").getCount());
+            assertEquals("Total: ${order.amount * 2} \\${escaped}", metrics.getSlowestScanTemplate());
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(1L, server.getAttribute(new ObjectName(ExpressionMetrics.OBJECT_NAME), "ScannedExpressionCount"));
+            CompositeData evaluationNanos = (CompositeData) server.getAttribute(new ObjectName(ExpressionMetrics.OBJECT_NAME), "EvaluationNanos");
+            assertEquals(1L, evaluationNanos.get("count"));
+        } finally {
+            metrics.uninstall();
+        }
+        assertSame(ExpressionListener.NOOP, ExpressionListeners.getListener());
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(ExpressionMetrics.OBJECT_NAME)));
+    }
+
+    @Test
+    public void testCoercedEvaluation() {
+        assertEquals(Integer.valueOf(10), evaluator.evalAsCoerced("order.amount", Integer.class));
+        assertEquals("10", evaluator.evalAsCoerced("order.amount", String.class));
+        assertEquals(Long.valueOf(42), evaluator.evalAsCoerced("'42'", Long.class));
+        assertEquals(10, evaluator.evalAsInt("order.amount"));
+        assertEquals(0, evaluator.evalAsInt("order.discount"));
+        assertEquals(3, evaluator.evalAsLongValue("'3'"));
+        assertEquals(2, evaluator.evalAsLongValue("2.7"));
+        assertEquals(0, evaluator.evalAsLongValue("null"));
+        assertEquals(0.5, evaluator.evalAsDoubleValue("'0.5'"), 0);
+        assertEquals(10, evaluator.evalAsDoubleValue("order.amount"), 0);
+        try {
+            evaluator.evalAsLong("2.7");
+            fail();
+        } catch (ExpressionEvaluationException e) {
+            // The strict evaluation does not convert the result.
+        }
+    }
+
+    @Test(expected = ExpressionEvaluationException.class)
+    public void testCoercedEvaluationOfIncompatibleType() {
+        evaluator.evalAsCoerced("order", Integer.class);
+    }
+
+    @Test
+    public void testEvaluationWithoutCache() {
+        ExpressionEvaluator evaluator = new ExpressionEvaluator(elProcessor);
+        assertNull(evaluator.getValueExpressionCache());
+        assertEquals(Double.valueOf(5), evaluator.evalAsDouble("order.amount * order.discount"));
+
+        elProcessor.setVariable("x", "5");
+        assertEquals(Long.valueOf(6), evaluator.evalAsLong("x + 1"));
+        elProcessor.setVariable("x", "100");
+        assertEquals(Long.valueOf(101), evaluator.evalAsLong("x + 1"));
+    }
+
+    @Test
+    public void testConcurrentEvaluation() throws Exception {
+        ExpressionEvaluator evaluator = new ExpressionEvaluator(elProcessor, DEFAULT_CACHE_SIZE, ConcurrencyMode.THREAD_LOCAL);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (long i = 0; i < 1000; i++) {
+                String expression = "order.amount + " + (i % 10);
+                long expected = 10 + (i % 10);
+                results.add(executor.submit(() -> evaluator.evalAsLong(expression) - expected));
+            }
+            for (Future<Long> result : results) {
+                assertEquals(Long.valueOf(0), result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(10, evaluator.getValueExpressionCache().size());
+
+        evaluator.removeThreadELContext();
+        assertEquals(Long.valueOf(11), evaluator.evalAsLong("order.amount + 1"));
+    }
+
+    @Test
+    public void testScopedEvaluation() throws Exception {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("quantity", 3L);
+        variables.put("order", new ScopedOrder(4L));
+        assertEquals(Long.valueOf(12), evaluator.evalAs("order.amount * quantity", variables, Long.class));
+        assertEquals(Long.valueOf(10), evaluator.evalAs("order.amount", Long.class));
+        assertEquals(Long.valueOf(10), evaluator.evalAs("order.amount", singletonMap("quantity", 1L), Long.class));
+        try {
+            elProcessor.eval("quantity");
+            fail();
+        } catch (PropertyNotFoundException e) {
+            // The variables are not defined in the ELProcessor.
+        }
+
+        ELContext context = elProcessor.getELManager().getELContext();
+        ScopedELContext scopedContext = new ScopedELContext(context, variables);
+        ExpressionFactory factory = ELManager.getExpressionFactory();
+        context.putContext(ExpressionFactory.class, factory);
+        assertSame(factory, scopedContext.getContext(ExpressionFactory.class));
+        scopedContext.putContext(String.class, "scoped");
+        assertEquals("scoped", context.getContext(String.class));
+
+        ExpressionEvaluator evaluator = new ExpressionEvaluator(elProcessor);
+        evaluator.setDirectCompilation(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (long i = 0; i < 1000; i++) {
+                Map<String, Object> requestVariables = new HashMap<>();
+                requestVariables.put("quantity", 3L);
+                requestVariables.put("order", new ScopedOrder(i));
+                results.add(executor.submit(() -> evaluator.evalAs("order.amount * quantity", requestVariables, Long.class)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(Long.valueOf(i * 3), results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        elProcessor.setVariable("quantity", "5");
+        assertEquals(Long.valueOf(20), this.evaluator.evalAs("quantity * order.amount", variables, Long.class));
+        assertEquals(Long.valueOf(12), this.evaluator.evalAs("order.amount * quantity", variables, Long.class));
+    }
+
+    @Test(expected = ExpressionEvaluationException.class)
+    public void testEvaluationOfUnexpectedType() {
+        evaluator.evalAsInteger("order.amount");
+    }
+
+    @Test
+    public void testPrecompile() {
+        evaluator.precompile(asList("order.amount + 1", "order.discount > 0.1"));
+        assertEquals(2, evaluator.getValueExpressionCache().size());
+
+        assertEquals(Long.valueOf(11), evaluator.evalAsLong("order.amount + 1"));
+        assertEquals(true, evaluator.evalAsBoolean("order.discount > 0.1"));
+        assertEquals(2, evaluator.getValueExpressionCache().getHitCount());
+    }
+
+    public static class ScopedOrder {
+
+        private final long AMOUNT;
+
+        public ScopedOrder(long amount) {
+            AMOUNT = amount;
+        }
+
+        public long getAmount() {
+            return AMOUNT;
+        }
+
+    }
+
+}
@@ -1,26 +1,139 @@
 package com.seudev.util.text;
 
+import static com.seudev.util.el.ExpressionDefinitions.combine;
+import static com.seudev.util.el.ExpressionDefinitions.ofCurlyBracket;
 import static com.seudev.util.el.ExpressionDefinitions.ofDollarCurlyBracket;
+import static com.seudev.util.el.ExpressionDefinitions.ofSquareBracket;
+import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.junit.Test;
 
+import com.seudev.util.data.BoundedCache;
+import com.seudev.util.el.BoundTemplate;
+import com.seudev.util.el.CompiledTemplate;
+import com.seudev.util.el.CompositeExpressionDefinition;
+import com.seudev.util.el.EncodedTemplate;
 import com.seudev.util.el.Expression;
+import com.seudev.util.el.ExpressionDefinition;
+import com.seudev.util.el.ExpressionDefinitions;
+import com.seudev.util.el.ExpressionException;
+import com.seudev.util.el.ExpressionListeners;
+import com.seudev.util.el.ExpressionMetrics;
+import com.seudev.util.el.ExpressionScan;
+import com.seudev.util.el.RecursiveInterpolator;
+import com.seudev.util.el.ScanLimitException;
+import com.seudev.util.el.ScanLimits;
+import com.seudev.util.el.ScannerShape;
+import com.seudev.util.el.TemplateDiagnostics;
+import com.seudev.util.el.TemplateIndex;
+import com.seudev.util.el.TemplateIndexGenerator;
 import com.seudev.util.io.Resources;
 
 public class ExpressionDefinitionTest {
 
+	@Test
+	public void testCombinedInterpolation() {
+		String template = "Hello ${firstName} [lastName]! \\[not] \\${not} '${not} [not]' ${'[not]'} [${'not'}]";
+		CompositeExpressionDefinition definition = combine(ofDollarCurlyBracket(), ofSquareBracket());
+
+		SortedMap<Expression, SortedSet<Integer>> expressions = definition.findAll(template);
+		assertEquals(4, expressions.size());
+		Iterator<Expression> iterator = expressions.keySet().iterator();
+		assertEquals(ofDollarCurlyBracket(), iterator.next().getDefinition());
+		assertEquals(ofSquareBracket(), iterator.next().getDefinition());
+		assertEquals(ofDollarCurlyBracket(), iterator.next().getDefinition());
+		assertEquals(ofSquareBracket(), iterator.next().getDefinition());
+
+		String message = definition.interpolate(template, e -> (e.getDefinition() == ofSquareBracket()) ? "<" + e.getSubExpression() + ">" : e.getSubExpression());
+		assertEquals("Hello firstName <lastName>! [not] ${not} '${not} [not]' '[not]' <${'not'}>", message);
+		assertEquals(message, definition.compile(template).render(e -> (e.getDefinition() == ofSquareBracket()) ? "<" + e.getSubExpression() + ">" : e.getSubExpression()));
+	}
+
+	@Test
+	public void testCompiledTemplate() {
+		String template = "Lorem ${ipsum} dolor sit amet, 'consectetur adipiscing' elit, \\\\sed do \\${ 'eiusmod' ${(tempor + 1 * 10) / 5 == x ? 'incididunt ut' : 'labore \\\\et dolore'} magna \\${aliqua\\}  \\\\\\\\.";
+		CompiledTemplate compiledTemplate = ofDollarCurlyBracket().compile(template);
+
+		assertEquals(2, compiledTemplate.getExpressions().size());
+		assertEquals(3, compiledTemplate.getSegments().size());
+		assertEquals("Lorem ", compiledTemplate.getSegments().get(0));
+		assertEquals(" dolor sit amet, 'consectetur adipiscing' elit, \\sed do ${ 'eiusmod' ", compiledTemplate.getSegments().get(1));
+		assertEquals(" magna ${aliqua}  \\\\.", compiledTemplate.getSegments().get(2));
+
+		AtomicInteger i = new AtomicInteger(1);
+		Function<Expression, ?> formatter = e -> "REPLACE" + i.getAndIncrement();
+		String expectedMessage = ofDollarCurlyBracket().interpolate(template, formatter);
+		i.set(1);
+		assertEquals(expectedMessage, compiledTemplate.render(formatter));
+		i.set(1);
+		assertEquals(expectedMessage, compiledTemplate.render(formatter));
+	}
+
+	@Test
+	public void testCompiledTemplateWithoutExpressions() {
+		String template = "Lorem ipsum \\\\ dolor";
+		CompiledTemplate compiledTemplate = ofDollarCurlyBracket().compile(template);
+
+		assertTrue(compiledTemplate.getExpressions().isEmpty());
+		assertEquals(template, compiledTemplate.render(e -> "REPLACE"));
+	}
+
+	@Test
+	public void testFileCompiledTemplate() {
+		String template = Resources.readLines("interpolation/message-template.html");
+		Function<Expression, ?> formatter = e -> e.getSubExpression().length();
+
+		assertEquals(ofDollarCurlyBracket().interpolate(template, formatter), ofDollarCurlyBracket().compile(template).render(formatter));
+	}
+
 	@Test
 	public void testFileInterpolation() {
 		String template = Resources.readLines("interpolation/message-template.html");
@@ -42,6 +155,22 @@ public class ExpressionDefinitionTest {
 		assertEquals(expectedMessage, message);
 	}
 
+	@Test
+	public void testFileStreamInterpolation() throws IOException {
+		String template = Resources.readLines("interpolation/message-template.html");
+		Function<Expression, ?> formatter = e -> e.getSubExpression().length();
+
+		for (int chunkLength : new int[]{1, 2, 3, 7, 8192}) {
+			StringBuilder message = new StringBuilder();
+			ofDollarCurlyBracket().interpolate(new ChunkedReader(template, chunkLength), message, formatter);
+			assertEquals(ofDollarCurlyBracket().interpolate(template, formatter), message.toString());
+
+			StringWriter writer = new StringWriter();
+			ofDollarCurlyBracket().interpolate(new ChunkedReader(template, chunkLength), writer, formatter);
+			assertEquals(message.toString(), writer.toString());
+		}
+	}
+
 	@Test
 	public void testIgnoreTextBetweenSingleQuotes() {
 		String template = "Lorem ${ipsum} dolor sit amet, 'consectetur adipiscing' elit, \\\\sed do \\${ 'eiusmod' ${(tempor + 1 * 10) / 5 == x ? 'incididunt ut' : 'labore \\\\et dolore'} magna \\${aliqua\\}  \\\\\\\\.";
@@ -82,6 +211,539 @@ public class ExpressionDefinitionTest {
 		assertEquals("Lorem REPLACE1 dolor sit amet, 'consectetur adipiscing' elit, \\sed do ${ 'eiusmod' REPLACE2 magna ${aliqua}  \\\\.", message);
 	}
 
+	@Test
+	public void testInterpolateAsync() {
+		String template = "Hello ${firstName} ${lastName}! Bye ${firstName}.";
+		AtomicInteger calls = new AtomicInteger();
+		CompletableFuture<String> message = ofDollarCurlyBracket().interpolateAsync(template, e -> {
+			calls.incrementAndGet();
+			return CompletableFuture.supplyAsync(e::getSubExpression);
+		});
+
+		assertEquals("Hello firstName lastName! Bye firstName.", message.join());
+		assertEquals(2, calls.get());
+	}
+
+	@Test
+	public void testInterpolateAsyncWithTimeout() {
+		String template = "Hello ${firstName} ${lastName}!";
+		CompletableFuture<String> message = ofDollarCurlyBracket().interpolateAsync(template,
+				e -> e.getSubExpression().equals("firstName") ? CompletableFuture.completedFuture("Thomás") : new CompletableFuture<>(),
+				50, TimeUnit.MILLISECONDS, e -> "?");
+
+		assertEquals("Hello Thomás ?!", message.join());
+	}
+
+	@Test
+	public void testInterpolateAsyncFallbackOnce() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			for (int i = 0; i < 200; i++) {
+				AtomicInteger fallbacks = new AtomicInteger();
+				CompletableFuture<String> message = ofDollarCurlyBracket().interpolateAsync("Hello ${firstName}!", e -> CompletableFuture.supplyAsync(() -> {
+					LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+					throw new IllegalStateException();
+				}, executor), 1, TimeUnit.MILLISECONDS, e -> "#" + fallbacks.incrementAndGet());
+
+				assertEquals("Hello #1!", message.join());
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(2));
+				assertEquals(1, fallbacks.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test(expected = ExpressionException.class)
+	public void testInterpolateAsyncFailure() throws Throwable {
+		CompletableFuture<String> message = ofDollarCurlyBracket().interpolateAsync("Hello ${firstName}!", e -> {
+			CompletableFuture<String> value = new CompletableFuture<>();
+			value.completeExceptionally(new IllegalStateException());
+			return value;
+		});
+		try {
+			message.join();
+		} catch (CompletionException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	@Test
+	public void testInterpolateAll() {
+		String template = "Hello ${firstName} ${lastName}!";
+		List<Integer> records = IntStream.range(0, 1000).boxed().collect(toList());
+		BiFunction<Expression, Integer, ?> formatter = (e, record) -> e.getSubExpression() + record;
+
+		List<String> messages = ofDollarCurlyBracket().interpolateAll(template, records.parallelStream(), formatter).collect(toList());
+		assertEquals(1000, messages.size());
+		assertEquals("Hello firstName999 lastName999!", messages.get(999));
+
+		List<String> orderedMessages = new ArrayList<>();
+		ofDollarCurlyBracket().interpolateAll(template, records, formatter, (record, message) -> orderedMessages.add(message), null, 16, true);
+		assertEquals(messages, orderedMessages);
+
+		Map<Integer, String> unorderedMessages = new ConcurrentHashMap<>();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			ofDollarCurlyBracket().interpolateAll(template, records, formatter, unorderedMessages::put, executor, 16, false);
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(1000, unorderedMessages.size());
+		assertEquals("Hello firstName10 lastName10!", unorderedMessages.get(10));
+	}
+
+	@Test(expected = ExpressionException.class)
+	public void testInterpolateAllFailure() {
+		ofDollarCurlyBracket().interpolateAll("Hello ${firstName}!", Arrays.asList(1, 2, 3), (e, record) -> (record == 2) ? null : record, (record, message) -> {}, null, 2, false);
+	}
+
+	@Test
+	public void testInterpolateAllError() {
+		try {
+			ofDollarCurlyBracket().interpolateAll("Hello ${firstName}!", Arrays.asList(1, 2, 3), (e, record) -> record, (record, message) -> {
+				if (record == 2) {
+					throw new AssertionError("The record 2 cannot be consumed.");
+				}
+			}, null, 2, false);
+		} catch (AssertionError e) {
+			assertEquals("The record 2 cannot be consumed.", e.getMessage());
+			return;
+		}
+		fail();
+	}
+
+	@Test
+	public void testNonAsciiDefinition() {
+		ExpressionDefinition definition = new ExpressionDefinition("«", "»", '\\', true, true);
+		String template = "Olá «nome», você tem «'«»' + itens» itens \\«não» 'nem «isso»'";
+
+		assertEquals("Olá NOME, você tem '«»' + ITENS itens «não» 'nem «isso»'", definition.interpolate(template, e -> e.getSubExpression().toUpperCase()));
+	}
+
+	@Test
+	public void testParseCache() {
+		ExpressionDefinition definition = new ExpressionDefinition("${", "}", '\\', true, true);
+		definition.setParseCache(new BoundedCache<>(10));
+		String template = "Hello ${firstName} ${lastName}!";
+
+		ExpressionScan scan = definition.scan(template);
+		assertSame(scan, definition.scan(template));
+		assertEquals("Hello firstName lastName!", definition.interpolate(template, Expression::getSubExpression));
+		assertEquals(2, definition.getParseCache().getHitCount());
+		assertEquals(1, definition.getParseCache().getMissCount());
+
+		definition.setParseCache(null);
+		assertNotSame(scan, definition.scan(template));
+	}
+
+	@Test
+	public void testScan() {
+		String template = "Lorem ${ipsum} dolor sit amet, 'consectetur adipiscing' elit, \\\\sed do \\${ 'eiusmod' ${(tempor + 1 * 10) / 5 == x ? 'incididunt ut' : 'labore \\\\et dolore'} magna \\${aliqua\\}  \\\\\\\\.";
+		ExpressionScan scan = ofDollarCurlyBracket().scan(template);
+
+		assertEquals(2, scan.size());
+		assertEquals("${ipsum}", scan.getExpression(0).getExpression());
+		assertEquals(85, scan.getExpression(1).getStart());
+		assertArrayEquals(new int[]{62, 71, 162, 171, 175, 177}, scan.getEscapeIndexes());
+
+		SortedMap<Expression, SortedSet<Integer>> expressions = scan.asSortedMap();
+		assertEquals(new TreeSet<>(Arrays.asList(62, 71, 162, 171, 175, 177)), expressions.get(scan.getExpression(1)));
+		assertEquals(new TreeSet<>(Arrays.asList(171, 175, 177)), expressions.get(scan.getExpression(1)).tailSet(163));
+		assertEquals(1, expressions.headMap(scan.getExpression(1)).size());
+		assertEquals(scan.getExpression(1), expressions.tailMap(scan.getExpression(1)).firstKey());
+
+		AtomicInteger i = new AtomicInteger(1);
+		Function<Expression, ?> formatter = e -> "REPLACE" + i.getAndIncrement();
+		String expectedMessage = ofDollarCurlyBracket().interpolate(template, formatter);
+		i.set(1);
+		assertEquals(expectedMessage, ofDollarCurlyBracket().interpolate(template, scan, formatter));
+		i.set(1);
+		assertEquals(expectedMessage, ofDollarCurlyBracket().interpolate(template, new TreeMap<>(expressions), formatter));
+	}
+
+	@Test
+	public void testCharSequenceInput() {
+		String template = "Lorem ${ipsum} dolor \\${sit} 'amet, ${consectetur}' ${adipiscing + '}'} elit.";
+		Function<Expression, ?> formatter = e -> e.getSubExpression().toUpperCase();
+		String expectedMessage = ofDollarCurlyBracket().interpolate(template, formatter);
+
+		StringBuilder builder = new StringBuilder(template);
+		assertEquals(ofDollarCurlyBracket().findAll(template), ofDollarCurlyBracket().findAll(builder));
+		assertEquals(ofDollarCurlyBracket().indexOf(template, 10), ofDollarCurlyBracket().indexOf(builder, 10));
+		assertEquals(ofDollarCurlyBracket().getExpressionEndIndex(template, 57), ofDollarCurlyBracket().getExpressionEndIndex(builder, 57));
+		assertEquals(expectedMessage, ofDollarCurlyBracket().interpolate(builder, formatter));
+
+		char[] chars = ("<<" + template + ">>").toCharArray();
+		assertEquals(ofDollarCurlyBracket().findAll(template), ofDollarCurlyBracket().findAll(chars, 2, template.length()));
+		assertEquals(expectedMessage, ofDollarCurlyBracket().interpolate(chars, 2, template.length(), formatter));
+		assertArrayEquals(ofDollarCurlyBracket().scan(template).getEscapeIndexes(), ofDollarCurlyBracket().scan(chars, 2, template.length()).getEscapeIndexes());
+	}
+
+	@Test
+	public void testTemplateBackedExpression() throws IOException, ClassNotFoundException {
+		String template = "Lorem ${ipsum} dolor ${sit + 'amet'}.";
+		Expression expression = ofDollarCurlyBracket().findAll(template).lastKey();
+		Expression copy = new Expression(21, "${sit + 'amet'}", "sit + 'amet'");
+
+		assertEquals(copy, expression);
+		assertEquals(copy.hashCode(), expression.hashCode());
+		assertEquals(copy.getExpression(), expression.getExpression());
+		assertEquals(copy.getSubExpression(), expression.getSubExpression());
+		assertEquals(copy.getEnd(), expression.getEnd());
+		assertEquals("sit + 'amet'".hashCode(), expression.getSubExpressionHash());
+		assertEquals("${sit + 'amet'}", expression.getExpressionSequence().toString());
+		assertEquals("'amet'", expression.getSubExpressionSequence().subSequence(6, 12).toString());
+		assertSame(expression.getExpression(), expression.getExpression());
+		assertSame(expression.getSubExpression(), expression.getSubExpression());
+		assertSame(expression.getExpression(), expression.getExpressionSequence());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(expression);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			Expression deserialized = (Expression) in.readObject();
+			assertEquals(expression, deserialized);
+			assertEquals(expression.getSubExpressionHash(), deserialized.getSubExpressionHash());
+		}
+		assertFalse(new String(bytes.toByteArray(), "ISO-8859-1").contains("Lorem"));
+	}
+
+	@Test
+	public void testLazyExpressions() {
+		String template = "Lorem ${ipsum} dolor \\${sit} 'amet, ${consectetur}' ${adipiscing} elit ${sed";
+		Iterator<Expression> expressions = ofDollarCurlyBracket().expressions(template).iterator();
+		assertEquals("${ipsum}", expressions.next().getExpression());
+		assertEquals("${adipiscing}", expressions.next().getExpression());
+		try {
+			expressions.next();
+			fail();
+		} catch (ExpressionException e) {
+			// The unclosed expression is found only when it is reached.
+		}
+
+		assertTrue(ofDollarCurlyBracket().containsExpression(template));
+		assertFalse(ofDollarCurlyBracket().containsExpression("Lorem \\${ipsum} 'dolor ${sit}'"));
+		String complete = "Lorem ${ipsum} dolor \\${sit} 'amet, ${consectetur}' ${adipiscing} elit.";
+		assertEquals(new ArrayList<>(ofDollarCurlyBracket().findAll(complete).keySet()), ofDollarCurlyBracket().expressions(complete).collect(toList()));
+	}
+
+	@Test
+	public void testEncodedTemplate() throws IOException {
+		CompiledTemplate template = ofDollarCurlyBracket().compile("Olá ${name}, \\${literal} ${long} ação.");
+		StringBuilder longValue = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			longValue.append("çã");
+		}
+		Function<Expression, ?> formatter = e -> e.getSubExpression().equals("long") ? longValue : "Zoë";
+		byte[] expected = template.render(formatter).getBytes(StandardCharsets.UTF_8);
+		EncodedTemplate encoded = template.encode(StandardCharsets.UTF_8);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		encoded.render(formatter, out);
+		assertArrayEquals(expected, out.toByteArray());
+
+		out.reset();
+		encoded.render(formatter, Channels.newChannel(out));
+		assertArrayEquals(expected, out.toByteArray());
+
+		ByteBuffer buffer = ByteBuffer.allocate(expected.length + 2);
+		buffer.put((byte) 1);
+		assertEquals(expected.length, encoded.render(formatter, buffer));
+		assertArrayEquals(expected, Arrays.copyOfRange(buffer.array(), 1, (expected.length + 1)));
+
+		try {
+			encoded.render(formatter, ByteBuffer.allocate(expected.length - 1));
+			fail();
+		} catch (BufferOverflowException e) {
+			// The buffer is too small for the output.
+		}
+
+		assertEquals(StandardCharsets.UTF_16LE, template.encode(StandardCharsets.UTF_16LE).getCharset());
+		for (String charset : Arrays.asList("UTF-16", "ISO-2022-JP")) {
+			try {
+				template.encode(Charset.forName(charset));
+				fail(charset);
+			} catch (IllegalArgumentException e) {
+				// The segments cannot be encoded independently.
+			}
+		}
+	}
+
+	@Test
+	public void testBoundTemplate() {
+		CompiledTemplate template = ofDollarCurlyBracket().compile("Dear ${name}, your order ${order} of ${total} \\${total} was shipped to ${name}.");
+		BoundTemplate bound = template.bind("order", "name", "total", "unused");
+		assertArrayEquals(new int[]{1, 0, 2, 1}, bound.getSlots());
+
+		Object[] values = {42, "Ana", "$ 10.00", null};
+		String expectedMessage = "Dear Ana, your order 42 of $ 10.00 ${total} was shipped to Ana.";
+		assertEquals(expectedMessage, bound.render(values));
+		assertEquals(expectedMessage, bound.render(slot -> values[slot]));
+
+		try {
+			template.bind("order", "name");
+			fail();
+		} catch (ExpressionException e) {
+			assertEquals("The expression is not bound to a variable: ${total}", e.getMessage());
+		}
+		try {
+			bound.render(42, null, "$ 10.00", null);
+			fail();
+		} catch (ExpressionException e) {
+			assertEquals("The expression cannot be interpolate: ${name}", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testTemplateIndex() throws IOException {
+		Path directory = Files.createTempDirectory("template-index");
+		try {
+			Path templates = Files.createDirectories(directory.resolve("templates/mail"));
+			String template = Resources.readLines("interpolation/message-template.html");
+			Files.write(templates.resolve("message.html"), template.getBytes());
+			Files.write(templates.resolve("subject.html"), "Re: \\${subject} ${subject}".getBytes());
+			Files.write(templates.resolve("ignored.txt"), "${ignored}".getBytes());
+
+			Path indexFile = TemplateIndexGenerator.generate(directory, "templates", ".html", ofDollarCurlyBracket());
+			TemplateIndex index;
+			try (InputStream in = Files.newInputStream(indexFile)) {
+				index = TemplateIndex.read(in, ofDollarCurlyBracket());
+			}
+			assertEquals(new TreeSet<>(Arrays.asList("templates/mail/message.html", "templates/mail/subject.html")), index.getNames());
+
+			Function<Expression, ?> formatter = e -> e.getSubExpression().length();
+			assertEquals(ofDollarCurlyBracket().interpolate(template, formatter), index.getTemplate("templates/mail/message.html").render(formatter));
+			assertEquals(ofDollarCurlyBracket().findAll(template), index.getScan("templates/mail/message.html").asSortedMap());
+			assertArrayEquals(ofDollarCurlyBracket().scan(template).getEscapeIndexes(), index.getScan("templates/mail/message.html").getEscapeIndexes());
+			assertEquals("Re: ${subject} 7", index.getTemplate("templates/mail/subject.html").render(formatter));
+
+			try (InputStream in = Files.newInputStream(indexFile)) {
+				TemplateIndex.read(in, ofCurlyBracket());
+				fail();
+			} catch (ExpressionException e) {
+				// The index was built by another definition.
+			}
+		} finally {
+			try (Stream<Path> paths = Files.walk(directory)) {
+				for (Path path : paths.sorted(Comparator.reverseOrder()).collect(toList())) {
+					Files.delete(path);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testValidation() {
+		String template = "Lorem ${ipsum} ${dolor + \"sit} amet, ${consectetur}. ${adipiscing";
+		TemplateDiagnostics diagnostics = ofDollarCurlyBracket().validate(template);
+
+		assertFalse(diagnostics.isValid());
+		assertFalse(diagnostics.isTruncated());
+		assertEquals(3, diagnostics.getErrorCount());
+		assertEquals(TemplateDiagnostics.ErrorKind.UNCLOSED_QUOTE_LITERAL, diagnostics.getErrorKind(0));
+		assertEquals(25, diagnostics.getErrorOffset(0));
+		assertEquals(TemplateDiagnostics.ErrorKind.UNCLOSED_EXPRESSION, diagnostics.getErrorKind(1));
+		assertEquals(37, diagnostics.getErrorOffset(1));
+		assertEquals(TemplateDiagnostics.ErrorKind.UNCLOSED_EXPRESSION, diagnostics.getErrorKind(2));
+		assertEquals(53, diagnostics.getErrorOffset(2));
+		assertEquals(Arrays.asList("ipsum"), diagnostics.getExpressions().stream().map(Expression::getSubExpression).collect(toList()));
+
+		TemplateDiagnostics recovered = ofDollarCurlyBracket().validate("Lorem ${ipsum} \"${dolor\" ${sit} ${amet");
+		assertEquals(1, recovered.getErrorCount());
+		assertEquals(Arrays.asList("ipsum", "sit"), recovered.getExpressions().stream().map(Expression::getSubExpression).collect(toList()));
+
+		TemplateDiagnostics unclosedQuote = ofDollarCurlyBracket().validate("It's ${ipsum}, ${dolor");
+		assertEquals(2, unclosedQuote.getErrorCount());
+		assertEquals(TemplateDiagnostics.ErrorKind.UNCLOSED_QUOTE_LITERAL, unclosedQuote.getErrorKind(0));
+		assertEquals(2, unclosedQuote.getErrorOffset(0));
+		assertEquals(TemplateDiagnostics.ErrorKind.UNCLOSED_EXPRESSION, unclosedQuote.getErrorKind(1));
+		assertEquals(15, unclosedQuote.getErrorOffset(1));
+		assertEquals(Arrays.asList("ipsum"), unclosedQuote.getExpressions().stream().map(Expression::getSubExpression).collect(toList()));
+
+		TemplateDiagnostics firstError = ofDollarCurlyBracket().validate(template, 1);
+		assertEquals(1, firstError.getErrorCount());
+		assertTrue(firstError.isTruncated());
+
+		String validTemplate = "Lorem ${ipsum} \\${dolor} 'sit ${amet}', ${consectetur}";
+		assertTrue(ofDollarCurlyBracket().validate(validTemplate).isValid());
+		assertEquals(new ArrayList<>(ofDollarCurlyBracket().findAll(validTemplate).keySet()), ofDollarCurlyBracket().validate(validTemplate).getExpressions());
+	}
+
+	@Test(timeout = 2000)
+	public void testValidationOfLargeMalformedTemplate() {
+		for (String malformed : Arrays.asList("${", "${'", "${\"'")) {
+			StringBuilder template = new StringBuilder();
+			for (int i = 0; i < 200_000; i++) {
+				template.append(malformed);
+			}
+			TemplateDiagnostics diagnostics = ofDollarCurlyBracket().validate(template);
+			assertFalse(diagnostics.isValid());
+			assertFalse(diagnostics.isTruncated());
+			assertTrue(diagnostics.getErrorCount() > 0);
+		}
+		StringBuilder template = new StringBuilder();
+		for (int i = 0; i < 200_000; i++) {
+			template.append("'\\");
+		}
+		TemplateDiagnostics diagnostics = new ExpressionDefinition("${", "}", '#', true, true).validate(template);
+		assertFalse(diagnostics.isTruncated());
+		assertEquals(200_000, diagnostics.getErrorCount());
+	}
+
+	@Test
+	public void testScannerShapes() {
+		assertEquals(ScannerShape.TWO_CHAR_START, ofDollarCurlyBracket().getScannerShape());
+		assertEquals(ScannerShape.SINGLE_CHAR, ofCurlyBracket().getScannerShape());
+		assertEquals(ScannerShape.GENERIC, new ExpressionDefinition("<%", "%>", '\\', true, true).getScannerShape());
+
+		String[] templates = {
+				"Lorem ${ipsum} dolor \\${sit} {amet} [consectetur] ${adipiscing ${elit}} 'sed ${do}' \"eiusmod ${tempor}\"",
+				"Lorem ${ipsum ${dolor} sit", "Lorem ${ipsum 'dolor} sit", "Lorem {ipsum \"dolor 'sit\"} amet", "Lorem $ { ipsum } $"};
+		for (String[] bounds : new String[][]{{"${", "}"}, {"{", "}"}, {"[", "]"}, {"'", "'"}}) {
+			ExpressionDefinition generic = new ExpressionDefinition(bounds[0], bounds[1], '\\', true, true, ScannerShape.GENERIC);
+			ExpressionDefinition specialized = new ExpressionDefinition(bounds[0], bounds[1], '\\', true, true);
+			assertNotSame(ScannerShape.GENERIC, specialized.getScannerShape());
+			for (String template : templates) {
+				assertEquals(scanResult(generic, template), scanResult(specialized, template));
+			}
+		}
+		try {
+			new ExpressionDefinition("<%", "%>", '\\', true, true, ScannerShape.SINGLE_CHAR);
+			fail("The scanner shape must not support the open and close arguments");
+		} catch (ExpressionException ex) {
+		}
+
+		ExpressionDefinition definition = ExpressionDefinitions.of("<%", "%>", '\\', true, true, 10);
+		assertEquals(definition.findAll("Lorem <%ipsum%>"), definition.findAll("Lorem <%ipsum%>"));
+		assertEquals(1, definition.getParseCache().getHitCount());
+	}
+
+	private static Object scanResult(ExpressionDefinition definition, String template) {
+		try {
+			return definition.findAll(template).toString();
+		} catch (ExpressionException ex) {
+			return ex.getMessage();
+		}
+	}
+
+	@Test
+	public void testScanLimits() {
+		StringBuilder nestedQuotes = new StringBuilder("Lorem ${ipsum + ");
+		for (int i = 0; i < 50000; i++) {
+			nestedQuotes.append((i % 2) == 0 ? '\'' : '"');
+		}
+		for (int i = 49999; i >= 0; i--) {
+			nestedQuotes.append((i % 2) == 0 ? '\'' : '"');
+		}
+		String deepTemplate = nestedQuotes.append("} dolor").toString();
+		assertEquals(1, ofDollarCurlyBracket().scan(deepTemplate).size());
+		assertScanLimitExceeded(ScanLimits.Limit.NESTING_DEPTH, 16 + 64, deepTemplate, new ScanLimits(1000, 64, 1000, Integer.MAX_VALUE));
+		assertScanLimitExceeded(ScanLimits.Limit.QUOTE_LITERAL_LENGTH, 16, deepTemplate, new ScanLimits(Integer.MAX_VALUE, Integer.MAX_VALUE, 1000, 1000));
+		assertScanLimitExceeded(ScanLimits.Limit.EXPRESSION_LENGTH, 6, deepTemplate, new ScanLimits(1000, Integer.MAX_VALUE, 1000, Integer.MAX_VALUE));
+
+		String template = "Lorem ${ipsum} ${dolor ${sit}} '${amet}' ${consectetur}";
+		assertEquals(ofDollarCurlyBracket().scan(template).asSortedMap(), ofDollarCurlyBracket().scan(template, ScanLimits.NONE).asSortedMap());
+		assertEquals(3, ofDollarCurlyBracket().scan(template, new ScanLimits(15, 2, 3, 9)).size());
+		assertScanLimitExceeded(ScanLimits.Limit.EXPRESSION_COUNT, 41, template, new ScanLimits(15, 2, 2, 9));
+		assertScanLimitExceeded(ScanLimits.Limit.NESTING_DEPTH, 23, template, new ScanLimits(15, 1, 3, 9));
+		assertScanLimitExceeded(ScanLimits.Limit.EXPRESSION_LENGTH, 15, template, new ScanLimits(14, 2, 3, 9));
+		assertScanLimitExceeded(ScanLimits.Limit.QUOTE_LITERAL_LENGTH, 31, template, new ScanLimits(15, 2, 3, 8));
+
+		StringBuilder unclosedExpressions = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			unclosedExpressions.append("${");
+		}
+		TemplateDiagnostics diagnostics = ofDollarCurlyBracket().validate(unclosedExpressions, Integer.MAX_VALUE, new ScanLimits(100, Integer.MAX_VALUE, 1000, 1000));
+		assertTrue(diagnostics.isTruncated());
+		assertEquals(TemplateDiagnostics.ErrorKind.LIMIT_EXCEEDED, diagnostics.getErrorKind(0));
+		assertEquals(0, diagnostics.getErrorOffset(0));
+	}
+
+	private static void assertScanLimitExceeded(ScanLimits.Limit limit, int index, String template, ScanLimits limits) {
+		try {
+			ofDollarCurlyBracket().scan(template, limits);
+			fail("The scan limit " + limit + " was not exceeded");
+		} catch (ScanLimitException ex) {
+			assertEquals(limit, ex.getLimit());
+			assertEquals(index, ex.getIndex());
+		}
+	}
+
+	@Test
+	public void testStreamInterpolation() throws IOException {
+		String template = "Lorem ${ipsum} dolor sit amet, 'consectetur adipiscing' elit, \\\\sed do \\${ 'eiusmod' ${(tempor + 1 * 10) / 5 == x ? 'incididunt ut' : 'labore \\\\et dolore'} magna \\${aliqua\\}  \\\\\\\\.";
+		AtomicInteger i = new AtomicInteger(1);
+		Function<Expression, ?> formatter = e -> "REPLACE" + i.getAndIncrement();
+		String expectedMessage = ofDollarCurlyBracket().interpolate(template, formatter);
+
+		for (int chunkLength = 1; chunkLength < 10; chunkLength++) {
+			i.set(1);
+			StringBuilder message = new StringBuilder();
+			ofDollarCurlyBracket().interpolate(new ChunkedReader(template, chunkLength), message, formatter);
+			assertEquals(expectedMessage, message.toString());
+		}
+	}
+
+	@Test(expected = ExpressionException.class)
+	public void testStreamInterpolationOfUnterminatedExpression() throws IOException {
+		ofDollarCurlyBracket().interpolate(new StringReader("Hello ${firstName"), new StringBuilder(), e -> "Thomás");
+	}
+
+	@Test
+	public void testRecursiveInterpolation() {
+		Map<String, String> values = new HashMap<>();
+		values.put("scheme", "https");
+		values.put("host", "${name}.${domain}");
+		values.put("name", "api");
+		values.put("domain", "seudev.com");
+		values.put("base-url", "${scheme}://${host}");
+		values.put("users-url", "${base-url}/users?next=\\${cursor}");
+		values.put("self", "${loop}");
+		values.put("loop", "x ${self}");
+		values.put("proxy", "${scheme}:${port}");
+		Map<String, AtomicInteger> lookups = new HashMap<>();
+		Function<String, ?> counter = key -> {
+			lookups.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+			return values.get(key);
+		};
+
+		String text = ofDollarCurlyBracket().interpolateRecursively("${users-url} ${base-url} ${host} \\${host}", counter);
+		assertEquals("https://api.seudev.com/users?next=${cursor} https://api.seudev.com api.seudev.com ${host}", text);
+		lookups.values().forEach(count -> assertEquals(1, count.get()));
+		assertEquals(6, lookups.size());
+
+		RecursiveInterpolator interpolator = new RecursiveInterpolator(ofDollarCurlyBracket(), values::get, 2);
+		assertEquals("api.seudev.com", interpolator.resolve("host"));
+		assertRecursiveInterpolationError("The key uses itself: self -> loop -> self", new RecursiveInterpolator(ofDollarCurlyBracket(), values::get), "${self}");
+		assertRecursiveInterpolationError("The maximum depth 2 was exceeded: users-url -> base-url -> scheme", interpolator, "${users-url}");
+		assertRecursiveInterpolationError("The key is not defined: port", interpolator, "${port}");
+		assertRecursiveInterpolationError("The key is not defined: proxy -> port", interpolator, "${proxy}");
+
+		ExpressionMetrics metrics = new ExpressionMetrics();
+		ExpressionListeners.setListener(metrics);
+		try {
+			assertEquals("https://api.seudev.com", new RecursiveInterpolator(ofDollarCurlyBracket(), values::get).interpolate("${base-url}"));
+			assertEquals(5, metrics.getFormatNanos().getCount());
+		} finally {
+			ExpressionListeners.setListener(null);
+		}
+	}
+
+	private static void assertRecursiveInterpolationError(String message, RecursiveInterpolator interpolator, String template) {
+		try {
+			interpolator.interpolate(template);
+			fail();
+		} catch (ExpressionException e) {
+			Throwable cause = e;
+			while (cause.getCause() instanceof ExpressionException) {
+				cause = cause.getCause();
+			}
+			assertEquals(message, cause.getMessage());
+		}
+	}
+
 	@Test
 	public void testInterpolation() {
 		String template = "Hello ${firstName} ${lastName}!";
@@ -89,4 +751,20 @@ public class ExpressionDefinitionTest {
 		assertEquals("Hello Thomás Sousa Silva!", text);
 	}
 
+	private static class ChunkedReader extends FilterReader {
+
+		private final int chunkLength;
+
+		ChunkedReader(String text, int chunkLength) {
+			super(new StringReader(text));
+			this.chunkLength = chunkLength;
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			return super.read(cbuf, off, Math.min(len, chunkLength));
+		}
+
+	}
+
 }